@@ -1,8 +1,8 @@
 package io.exercise.api.actions;
 
-import io.exercise.api.models.User;
+import io.exercise.api.models.Principal;
 import play.libs.typedmap.TypedKey;
 
 public class Attributes {
-    public static final TypedKey<User> USER_TYPED_KEY = TypedKey.<User>create("user");
+    public static final TypedKey<Principal> PRINCIPAL_TYPED_KEY = TypedKey.<Principal>create("principal");
 }
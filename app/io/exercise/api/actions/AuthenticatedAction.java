@@ -1,53 +1,71 @@
 package io.exercise.api.actions;
 
-import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.google.inject.Inject;
-import com.typesafe.config.Config;
+import io.exercise.api.cache.PrincipalCache;
+import io.exercise.api.cache.RoleHierarchy;
+import io.exercise.api.cache.UserLoader;
+import io.exercise.api.cache.UserVersions;
 import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.models.Principal;
 import io.exercise.api.models.User;
-import io.exercise.api.mongo.IMongoDB;
-import io.exercise.api.utils.ServiceUtils;
+import io.exercise.api.mongo.migrations.MigrationState;
+import io.exercise.api.services.TokenService;
 import play.libs.Json;
+import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.*;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 
 /**
  *  An action class used to authenticate a user based on a token.
+ *  The token is verified on the calling thread. Stateless tokens carry their user, which is only checked
+ *  against the user versions, otherwise the user is looked up in the principal cache or loaded by the user loader without blocking,
+ *  and the wrapped action is called back on the http execution context.
  *  Create by Osmon on 08/15/2022
  */
 public class AuthenticatedAction extends Action<Authenticated> {
     @Inject
-    IMongoDB mongoDB;
+    HttpExecutionContext ec;
 
     @Inject
-    Config config;
+    TokenService tokenService;
+
+    @Inject
+    PrincipalCache principalCache;
+
+    @Inject
+    UserLoader userLoader;
+
+    @Inject
+    UserVersions userVersions;
+
+    @Inject
+    RoleHierarchy roleHierarchy;
+
+    @Inject
+    MigrationState migrationState;
 
     @Override
     public CompletionStage<Result> call(Http.Request request) {
+        DecodedJWT token;
         try {
-            String token = ServiceUtils
-                    .getTokenFrom(request)
-                    .join();
-
-            User user = ServiceUtils
-                    .extractIdFrom(token)
-                    .thenCompose((id) -> ServiceUtils.getUserFrom(mongoDB, id))
-                    .thenCompose((usr) -> ServiceUtils.verifyTokenFor(usr, token, config))
-                    .join();
-
-            request = request.addAttr(Attributes.USER_TYPED_KEY, user);
-            return delegate.call(request);
-        } catch (JWTVerificationException ex) {
-            ex.printStackTrace();
-            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid signature/claims.")));
+            token = tokenService.verify(request.getHeaders().get("token").orElse(null));
         } catch (CompletionException ex) {
-            ex.printStackTrace();
-            throw ex;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, Json.toJson("Invalid")));
+            return CompletableFuture.failedFuture(ex);
         }
+
+        User claimed = userVersions.isEnabled() ? tokenService.principalOf(token) : null;
+        if (claimed != null) {
+            if (!userVersions.isCurrent(token.getIssuer(), token.getClaim(TokenService.VERSION_CLAIM).asLong())) {
+                return CompletableFuture.failedFuture(new CompletionException(new RequestException(Http.Status.UNAUTHORIZED, Json.toJson("Token revoked, authenticate again."))));
+            }
+            return delegate.call(request.addAttr(Attributes.PRINCIPAL_TYPED_KEY, Principal.of(claimed, roleHierarchy.expand(claimed.getRoles()), migrationState)));
+        }
+
+        return principalCache.get(token.getIssuer(), userLoader::load)
+                .thenComposeAsync((user) -> delegate.call(request.addAttr(Attributes.PRINCIPAL_TYPED_KEY, Principal.of(user, roleHierarchy.expand(user.getRoles()), migrationState))), ec.current());
     }
 }
@@ -8,7 +8,7 @@ import akka.cluster.pubsub.DistributedPubSubMediator;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import io.exercise.api.models.ChatRoom;
-import io.exercise.api.models.User;
+import io.exercise.api.models.Principal;
 
 public class ChatActor extends AbstractActor {
 
@@ -22,13 +22,13 @@ public class ChatActor extends AbstractActor {
     private ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
     private ActorRef out;
     private ChatRoom room;
-    private User user;
+    private Principal user;
 
-    public static Props props (ActorRef out, ChatRoom room, User user) {
+    public static Props props (ActorRef out, ChatRoom room, Principal user) {
         return Props.create(ChatActor.class, () -> new ChatActor(out, room, user));
     }
 
-    public ChatActor (ActorRef out, ChatRoom room, User user) {
+    public ChatActor (ActorRef out, ChatRoom room, Principal user) {
         this.out = out;
         this.room = room;
         this.user = user;
@@ -0,0 +1,35 @@
+package io.exercise.api.actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import io.exercise.api.cache.DashboardIndex;
+
+/**
+ * Applies the dashboard index changes published by the other nodes of the cluster.
+ */
+public class DashboardIndexActor extends AbstractActor {
+
+    private ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
+    private DashboardIndex index;
+
+    public static Props props (DashboardIndex index) {
+        return Props.create(DashboardIndexActor.class, () -> new DashboardIndexActor(index));
+    }
+
+    public DashboardIndexActor (DashboardIndex index) {
+        this.index = index;
+        mediator.tell(new DistributedPubSubMediator.Subscribe(DashboardIndex.TOPIC, getSelf()), getSelf());
+    }
+
+    @Override
+    public Receive createReceive () {
+        return receiveBuilder()
+                .match(DashboardIndexActorProtocol.Put.class, index::onPut)
+                .match(DashboardIndexActorProtocol.Remove.class, index::onRemove)
+                .match(DistributedPubSubMediator.SubscribeAck.class, message -> {})
+                .build();
+    }
+}
@@ -0,0 +1,27 @@
+package io.exercise.api.actors;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+public class DashboardIndexActorProtocol {
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Put implements ActorMessage {
+        private String origin;
+        private String id;
+        private String parentId;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Remove implements ActorMessage {
+        private String origin;
+        private List<String> ids;
+    }
+}
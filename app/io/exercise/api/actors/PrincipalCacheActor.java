@@ -0,0 +1,34 @@
+package io.exercise.api.actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import io.exercise.api.cache.PrincipalCache;
+
+/**
+ * Invalidates the principals changed on the other nodes of the cluster.
+ */
+public class PrincipalCacheActor extends AbstractActor {
+
+    private ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
+    private PrincipalCache cache;
+
+    public static Props props (PrincipalCache cache) {
+        return Props.create(PrincipalCacheActor.class, () -> new PrincipalCacheActor(cache));
+    }
+
+    public PrincipalCacheActor (PrincipalCache cache) {
+        this.cache = cache;
+        mediator.tell(new DistributedPubSubMediator.Subscribe(PrincipalCache.TOPIC, getSelf()), getSelf());
+    }
+
+    @Override
+    public Receive createReceive () {
+        return receiveBuilder()
+                .match(PrincipalCacheActorProtocol.Invalidate.class, cache::onInvalidate)
+                .match(DistributedPubSubMediator.SubscribeAck.class, message -> {})
+                .build();
+    }
+}
@@ -0,0 +1,16 @@
+package io.exercise.api.actors;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+public class PrincipalCacheActorProtocol {
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Invalidate implements ActorMessage {
+        private String origin;
+        private String id;
+    }
+}
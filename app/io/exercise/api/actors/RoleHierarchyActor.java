@@ -0,0 +1,34 @@
+package io.exercise.api.actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import io.exercise.api.cache.RoleHierarchy;
+
+/**
+ * Applies the role hierarchy rebuilt on the other nodes of the cluster.
+ */
+public class RoleHierarchyActor extends AbstractActor {
+
+    private ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
+    private RoleHierarchy roleHierarchy;
+
+    public static Props props (RoleHierarchy roleHierarchy) {
+        return Props.create(RoleHierarchyActor.class, () -> new RoleHierarchyActor(roleHierarchy));
+    }
+
+    public RoleHierarchyActor (RoleHierarchy roleHierarchy) {
+        this.roleHierarchy = roleHierarchy;
+        mediator.tell(new DistributedPubSubMediator.Subscribe(RoleHierarchy.TOPIC, getSelf()), getSelf());
+    }
+
+    @Override
+    public Receive createReceive () {
+        return receiveBuilder()
+                .match(RoleHierarchyActorProtocol.Update.class, roleHierarchy::onUpdate)
+                .match(DistributedPubSubMediator.SubscribeAck.class, message -> {})
+                .build();
+    }
+}
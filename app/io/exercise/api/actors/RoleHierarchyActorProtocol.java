@@ -0,0 +1,19 @@
+package io.exercise.api.actors;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+public class RoleHierarchyActorProtocol {
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Update implements ActorMessage {
+        private String origin;
+        private Map<String, List<String>> closure;
+    }
+}
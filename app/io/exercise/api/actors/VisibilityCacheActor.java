@@ -0,0 +1,35 @@
+package io.exercise.api.actors;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import io.exercise.api.cache.VisibilityCache;
+
+/**
+ * Applies the acl changes of the dashboards saved on the other nodes of the cluster to the visibility cache.
+ */
+public class VisibilityCacheActor extends AbstractActor {
+
+    private ActorRef mediator = DistributedPubSub.get(getContext().system()).mediator();
+    private VisibilityCache cache;
+
+    public static Props props (VisibilityCache cache) {
+        return Props.create(VisibilityCacheActor.class, () -> new VisibilityCacheActor(cache));
+    }
+
+    public VisibilityCacheActor (VisibilityCache cache) {
+        this.cache = cache;
+        mediator.tell(new DistributedPubSubMediator.Subscribe(VisibilityCache.TOPIC, getSelf()), getSelf());
+    }
+
+    @Override
+    public Receive createReceive () {
+        return receiveBuilder()
+                .match(VisibilityCacheActorProtocol.Update.class, cache::onUpdate)
+                .match(VisibilityCacheActorProtocol.InvalidateAll.class, cache::onInvalidateAll)
+                .match(DistributedPubSubMediator.SubscribeAck.class, message -> {})
+                .build();
+    }
+}
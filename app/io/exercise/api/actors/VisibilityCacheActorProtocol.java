@@ -0,0 +1,26 @@
+package io.exercise.api.actors;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+public class VisibilityCacheActorProtocol {
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Update implements ActorMessage {
+        private String origin;
+        private String id;
+        private List<String> access;
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class InvalidateAll implements ActorMessage {
+        private String origin;
+    }
+}
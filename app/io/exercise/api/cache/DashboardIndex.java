@@ -0,0 +1,592 @@
+package io.exercise.api.cache;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import com.google.inject.Inject;
+import com.mongodb.client.model.Projections;
+import io.exercise.api.actors.DashboardIndexActor;
+import io.exercise.api.actors.DashboardIndexActorProtocol;
+import io.exercise.api.mongo.IMongoDB;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import play.Logger;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * In-process index of the dashboard tree, mapping every dashboard to its parent and children.
+ * Dashboard ids are interned to int slots and the tree is kept in primitive arrays
+ * (a parent array plus first-child / next-sibling linked lists), so the index costs a few
+ * dozen bytes per dashboard instead of a map entry, a list and an ObjectId per edge.
+ * The index is loaded when the application starts, updated by DashboardService on every write
+ * and kept in sync across the cluster through the {@value #TOPIC} pub-sub topic.
+ */
+@Singleton
+public class DashboardIndex {
+    public static final String TOPIC = "dashboard-index";
+
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final ActorRef mediator;
+
+    /** ObjectId bytes of every slot, three ints per slot */
+    private int[] ids = new int[INITIAL_CAPACITY * 3];
+
+    private int[] parents = new int[INITIAL_CAPACITY];
+
+    private int[] firstChildren = new int[INITIAL_CAPACITY];
+
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+
+    /** Slots of existing dashboards, as opposed to slots that are only referenced as a parent */
+    private final BitSet live = new BitSet();
+
+    /** Open addressing table of slot + 1, where 0 marks an empty bucket */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+
+    private int slots = 0;
+
+    private int count = 0;
+
+    private int freeSlots = NONE;
+
+    private final List<IntConsumer> removeListeners = new CopyOnWriteArrayList<>();
+
+    @Inject
+    public DashboardIndex(IMongoDB mongoDB, ActorSystem actorSystem) {
+        this.mediator = DistributedPubSub.get(actorSystem).mediator();
+        load(mongoDB);
+        actorSystem.actorOf(DashboardIndexActor.props(this), "dashboard-index");
+    }
+
+    /**
+     * Load the parent of every dashboard from the database
+     * @param mongoDB database to load from
+     */
+    private void load(IMongoDB mongoDB) {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            mongoDB.getMongoDatabase()
+                    .getCollection("dashboards")
+                    .find()
+                    .projection(Projections.include("parentId"))
+                    .forEach((Document document) -> link(document.getObjectId("_id"), document.getObjectId("parentId")));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Logger.of(this.getClass()).debug("Loaded {} dashboards into the index in {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Listen to the removal of dashboards, here or on another node. The listener is called with the slot of
+     * every removed dashboard while the write lock is held, before the slot can be reused by another dashboard
+     * @param listener of the removed slots
+     */
+    public void onRemoved(IntConsumer listener) {
+        removeListeners.add(listener);
+    }
+
+    /**
+     * Add a dashboard to the index, or move it under a new parent, and let the other nodes know
+     * @param id of the dashboard
+     * @param parentId of the dashboard, null for root dashboards
+     */
+    public void put(ObjectId id, ObjectId parentId) {
+        apply(id, parentId);
+        mediator.tell(
+                new DistributedPubSubMediator.Publish(TOPIC, new DashboardIndexActorProtocol.Put(origin, id.toHexString(), parentId == null ? null : parentId.toHexString())),
+                ActorRef.noSender()
+        );
+    }
+
+    /**
+     * Remove dashboards from the index, and let the other nodes know
+     * @param ids of the dashboards
+     */
+    public void remove(Collection<ObjectId> ids) {
+        apply(ids);
+        List<String> hexIds = new ArrayList<>(ids.size());
+        ids.forEach(id -> hexIds.add(id.toHexString()));
+        mediator.tell(
+                new DistributedPubSubMediator.Publish(TOPIC, new DashboardIndexActorProtocol.Remove(origin, hexIds)),
+                ActorRef.noSender()
+        );
+    }
+
+    /**
+     * Apply a change published by another node
+     * @param message the change
+     */
+    public void onPut(DashboardIndexActorProtocol.Put message) {
+        if (origin.equals(message.getOrigin())) {
+            return;
+        }
+        apply(new ObjectId(message.getId()), message.getParentId() == null ? null : new ObjectId(message.getParentId()));
+    }
+
+    /**
+     * Apply a change published by another node
+     * @param message the change
+     */
+    public void onRemove(DashboardIndexActorProtocol.Remove message) {
+        if (origin.equals(message.getOrigin())) {
+            return;
+        }
+        List<ObjectId> removed = new ArrayList<>(message.getIds().size());
+        message.getIds().forEach(id -> removed.add(new ObjectId(id)));
+        apply(removed);
+    }
+
+    private void apply(ObjectId id, ObjectId parentId) {
+        lock.writeLock().lock();
+        try {
+            link(id, parentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void apply(Collection<ObjectId> ids) {
+        lock.writeLock().lock();
+        try {
+            ids.forEach(this::unlink);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the direct children of a dashboard
+     * @param id of the dashboard
+     * @return ids of the children
+     */
+    public List<ObjectId> children(ObjectId id) {
+        lock.readLock().lock();
+        try {
+            List<ObjectId> result = new ArrayList<>();
+            int slot = slotOf(id);
+            if (slot == NONE) {
+                return result;
+            }
+            for (int child = firstChildren[slot]; child != NONE; child = nextSiblings[child]) {
+                if (live.get(child)) {
+                    result.add(idAt(child));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the ancestors of a dashboard, the same ids as its materialized path
+     * @param id of the dashboard
+     * @return ids of the ancestors, from the root down to the direct parent
+     */
+    public List<ObjectId> ancestors(ObjectId id) {
+        lock.readLock().lock();
+        try {
+            List<ObjectId> result = new ArrayList<>();
+            int slot = slotOf(id);
+            if (slot == NONE) {
+                return result;
+            }
+            // guards against a corrupt parent chain looping forever
+            BitSet visited = new BitSet(slots);
+            visited.set(slot);
+            for (int parent = parents[slot]; parent != NONE && !visited.get(parent); parent = parents[parent]) {
+                visited.set(parent);
+                result.add(idAt(parent));
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get every descendant of the given dashboards, the dashboards themselves excluded
+     * @param roots ids of the dashboards to start from
+     * @return ids of the descendants, in breadth first order
+     */
+    public List<ObjectId> descendants(Collection<ObjectId> roots) {
+        lock.readLock().lock();
+        try {
+            List<ObjectId> result = new ArrayList<>();
+            // guards against a corrupt parent chain looping forever
+            BitSet visited = new BitSet(slots);
+            int[] queue = new int[16];
+            int head = 0, tail = 0;
+            for (ObjectId root : roots) {
+                int slot = slotOf(root);
+                if (slot == NONE || visited.get(slot)) {
+                    continue;
+                }
+                visited.set(slot);
+                if (tail == queue.length) {
+                    queue = Arrays.copyOf(queue, queue.length * 2);
+                }
+                queue[tail++] = slot;
+            }
+            while (head < tail) {
+                int slot = queue[head++];
+                for (int child = firstChildren[slot]; child != NONE; child = nextSiblings[child]) {
+                    if (!live.get(child) || visited.get(child)) {
+                        continue;
+                    }
+                    visited.set(child);
+                    result.add(idAt(child));
+                    if (tail == queue.length) {
+                        // compact the consumed part of the queue before growing it
+                        System.arraycopy(queue, head, queue, 0, tail - head);
+                        tail -= head;
+                        head = 0;
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, queue.length * 2);
+                        }
+                    }
+                    queue[tail++] = child;
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the slot of a dashboard
+     * @param id of the dashboard
+     * @return the slot, NONE in case the dashboard is not in the index
+     */
+    public int slot(ObjectId id) {
+        lock.readLock().lock();
+        try {
+            int slot = slotOf(id);
+            return slot != NONE && live.get(slot) ? slot : NONE;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Select the dashboards with the smallest ids out of a set of slots, without materializing the ids of the others
+     * @param candidates slots to select from
+     * @param after only select ids greater than this one, null to start from the smallest
+     * @param count number of ids to select
+     * @param rootsOnly whether to only select dashboards without a parent
+     * @return the selected ids, in _id order
+     */
+    public List<ObjectId> smallest(BitSet candidates, ObjectId after, int count, boolean rootsOnly) {
+        lock.readLock().lock();
+        try {
+            int[] bound = null;
+            if (after != null) {
+                byte[] bytes = after.toByteArray();
+                bound = new int[]{word(bytes, 0), word(bytes, 4), word(bytes, 8)};
+            }
+            // max heap of the count smallest slots seen so far, ordered by id
+            int[] heap = new int[Math.max(count, 1)];
+            int size = 0;
+            for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+                if (slot >= slots || !live.get(slot) || (rootsOnly && parents[slot] != NONE)) {
+                    continue;
+                }
+                if (bound != null && compare(slot, bound[0], bound[1], bound[2]) <= 0) {
+                    continue;
+                }
+                if (size < count) {
+                    heap[size] = slot;
+                    siftUp(heap, size++);
+                } else if (count > 0 && compare(slot, heap[0]) < 0) {
+                    heap[0] = slot;
+                    siftDown(heap, size);
+                }
+            }
+            Integer[] selected = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                selected[i] = heap[i];
+            }
+            Arrays.sort(selected, this::compare);
+            List<ObjectId> result = new ArrayList<>(size);
+            for (int slot : selected) {
+                result.add(idAt(slot));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (compare(heap[index], heap[parent]) <= 0) {
+                return;
+            }
+            int swap = heap[index];
+            heap[index] = heap[parent];
+            heap[parent] = swap;
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int largest = index;
+            int left = index * 2 + 1, right = left + 1;
+            if (left < size && compare(heap[left], heap[largest]) > 0) {
+                largest = left;
+            }
+            if (right < size && compare(heap[right], heap[largest]) > 0) {
+                largest = right;
+            }
+            if (largest == index) {
+                return;
+            }
+            int swap = heap[index];
+            heap[index] = heap[largest];
+            heap[largest] = swap;
+            index = largest;
+        }
+    }
+
+    /**
+     * Compare the ids of two slots the way ObjectIds compare, byte by byte unsigned
+     */
+    private int compare(int a, int b) {
+        return compare(a, ids[b * 3], ids[b * 3 + 1], ids[b * 3 + 2]);
+    }
+
+    private int compare(int slot, int w0, int w1, int w2) {
+        int result = Integer.compareUnsigned(ids[slot * 3], w0);
+        if (result == 0) {
+            result = Integer.compareUnsigned(ids[slot * 3 + 1], w1);
+        }
+        if (result == 0) {
+            result = Integer.compareUnsigned(ids[slot * 3 + 2], w2);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of dashboards in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return live.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the slot of a dashboard id, the caller must hold the lock
+     */
+    private int slotOf(ObjectId id) {
+        byte[] bytes = id.toByteArray();
+        int w0 = word(bytes, 0), w1 = word(bytes, 4), w2 = word(bytes, 8);
+        int entry = table[bucketOf(w0, w1, w2)];
+        return entry == 0 ? NONE : entry - 1;
+    }
+
+    private ObjectId idAt(int slot) {
+        byte[] bytes = new byte[12];
+        for (int i = 0; i < 3; i++) {
+            int word = ids[slot * 3 + i];
+            bytes[i * 4] = (byte) (word >>> 24);
+            bytes[i * 4 + 1] = (byte) (word >>> 16);
+            bytes[i * 4 + 2] = (byte) (word >>> 8);
+            bytes[i * 4 + 3] = (byte) word;
+        }
+        return new ObjectId(bytes);
+    }
+
+    private void link(ObjectId id, ObjectId parentId) {
+        int slot = intern(id);
+        live.set(slot);
+        int parent = parentId == null ? NONE : intern(parentId);
+        if (parents[slot] == parent) {
+            return;
+        }
+        detach(slot);
+        if (parent != NONE) {
+            parents[slot] = parent;
+            nextSiblings[slot] = firstChildren[parent];
+            firstChildren[parent] = slot;
+        }
+    }
+
+    private void unlink(ObjectId id) {
+        int slot = slotOf(id);
+        if (slot == NONE) {
+            return;
+        }
+        live.clear(slot);
+        removeListeners.forEach(listener -> listener.accept(slot));
+        detach(slot);
+        release(slot);
+    }
+
+    /**
+     * Take a slot out of the children of its parent
+     */
+    private void detach(int slot) {
+        int parent = parents[slot];
+        if (parent == NONE) {
+            return;
+        }
+        if (firstChildren[parent] == slot) {
+            firstChildren[parent] = nextSiblings[slot];
+        } else {
+            int previous = firstChildren[parent];
+            while (nextSiblings[previous] != slot) {
+                previous = nextSiblings[previous];
+            }
+            nextSiblings[previous] = nextSiblings[slot];
+        }
+        parents[slot] = NONE;
+        nextSiblings[slot] = NONE;
+        release(parent);
+    }
+
+    /**
+     * Free a slot once it no longer holds a dashboard nor the parent of one
+     */
+    private void release(int slot) {
+        if (live.get(slot) || firstChildren[slot] != NONE || parents[slot] != NONE) {
+            return;
+        }
+        int bucket = bucketOf(ids[slot * 3], ids[slot * 3 + 1], ids[slot * 3 + 2]);
+        removeBucket(bucket);
+        nextSiblings[slot] = freeSlots;
+        freeSlots = slot;
+        count--;
+    }
+
+    private int intern(ObjectId id) {
+        byte[] bytes = id.toByteArray();
+        int w0 = word(bytes, 0), w1 = word(bytes, 4), w2 = word(bytes, 8);
+        int bucket = bucketOf(w0, w1, w2);
+        if (table[bucket] != 0) {
+            return table[bucket] - 1;
+        }
+
+        int slot;
+        if (freeSlots != NONE) {
+            slot = freeSlots;
+            freeSlots = nextSiblings[slot];
+        } else {
+            if (slots == parents.length) {
+                grow();
+            }
+            slot = slots++;
+        }
+        ids[slot * 3] = w0;
+        ids[slot * 3 + 1] = w1;
+        ids[slot * 3 + 2] = w2;
+        parents[slot] = NONE;
+        firstChildren[slot] = NONE;
+        nextSiblings[slot] = NONE;
+        table[bucket] = slot + 1;
+        count++;
+
+        if (count * 3 > table.length * 2) {
+            rehash(table.length * 2);
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int capacity = parents.length + (parents.length >> 1);
+        ids = Arrays.copyOf(ids, capacity * 3);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+    }
+
+    private void rehash(int capacity) {
+        int[] previous = table;
+        table = new int[capacity];
+        for (int entry : previous) {
+            if (entry == 0) {
+                continue;
+            }
+            int slot = entry - 1;
+            table[bucketOf(ids[slot * 3], ids[slot * 3 + 1], ids[slot * 3 + 2])] = entry;
+        }
+    }
+
+    /**
+     * Linear probing, returns the bucket holding the id or the empty bucket it belongs to
+     */
+    private int bucketOf(int w0, int w1, int w2) {
+        int mask = table.length - 1;
+        int bucket = hash(w0, w1, w2) & mask;
+        while (true) {
+            int entry = table[bucket];
+            if (entry == 0) {
+                return bucket;
+            }
+            int slot = entry - 1;
+            if (ids[slot * 3] == w0 && ids[slot * 3 + 1] == w1 && ids[slot * 3 + 2] == w2) {
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    /**
+     * Backward shift deletion, keeps probe sequences intact without tombstones
+     */
+    private void removeBucket(int bucket) {
+        int mask = table.length - 1;
+        int next = bucket;
+        while (true) {
+            next = (next + 1) & mask;
+            int entry = table[next];
+            if (entry == 0) {
+                break;
+            }
+            int slot = entry - 1;
+            int home = hash(ids[slot * 3], ids[slot * 3 + 1], ids[slot * 3 + 2]) & mask;
+            boolean between = bucket <= next ? (bucket < home && home <= next) : (bucket < home || home <= next);
+            if (between) {
+                continue;
+            }
+            table[bucket] = entry;
+            bucket = next;
+        }
+        table[bucket] = 0;
+    }
+
+    private static int hash(int w0, int w1, int w2) {
+        int h = (w0 * 31 + w1) * 31 + w2;
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int word(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xff) << 24)
+                | ((bytes[offset + 1] & 0xff) << 16)
+                | ((bytes[offset + 2] & 0xff) << 8)
+                | (bytes[offset + 3] & 0xff);
+    }
+}
@@ -0,0 +1,211 @@
+package io.exercise.api.cache;
+
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throttles failed logins per account and per client ip, before any database lookup or password check,
+ * so that a credential stuffing storm costs a map lookup per attempt instead of a bcrypt hash.
+ * Failures are counted in a sliding window (the weighted sum of the previous and the current fixed window).
+ * A key that reaches its limit is locked out, for twice as long with every lockout in a row.
+ * Keys are spread over lock striped LRU maps, each bounded, so that hundreds of thousands of distinct keys
+ * neither contend on a single lock nor grow the memory without limit: the least recently used keys are evicted.
+ */
+@Singleton
+public class LoginThrottle {
+    private final Stripe[] stripes;
+
+    private final long windowMillis;
+
+    private final int maxFailuresPerAccount;
+
+    private final int maxFailuresPerIp;
+
+    private final long lockoutMillis;
+
+    private final long maxLockoutMillis;
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final LongAdder lockouts = new LongAdder();
+
+    @Inject
+    public LoginThrottle(Config config) {
+        this.windowMillis = config.getDuration("login-throttle.window", TimeUnit.MILLISECONDS);
+        this.maxFailuresPerAccount = config.getInt("login-throttle.max-failures-per-account");
+        this.maxFailuresPerIp = config.getInt("login-throttle.max-failures-per-ip");
+        this.lockoutMillis = config.getDuration("login-throttle.lockout", TimeUnit.MILLISECONDS);
+        this.maxLockoutMillis = config.getDuration("login-throttle.max-lockout", TimeUnit.MILLISECONDS);
+
+        // a power of two, so that a key is mapped to its stripe with a mask
+        int count = Integer.highestOneBit(Math.max(1, config.getInt("login-throttle.stripes")));
+        int capacity = Math.max(1, config.getInt("login-throttle.max-entries") / count);
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+    }
+
+    /**
+     * Check whether a login may be attempted
+     * @param username the login is attempted for
+     * @param ip of the client
+     * @return 0 in case the login may be attempted, otherwise the milliseconds until the lockout ends
+     */
+    public long retryAfter(String username, String ip) {
+        long now = System.currentTimeMillis();
+        long retryAfter = Math.max(retryAfter(accountKey(username), now), retryAfter(ipKey(ip), now));
+        if (retryAfter > 0) {
+            rejected.increment();
+        }
+        return retryAfter;
+    }
+
+    /**
+     * Count a failed login, for a user that does not exist or a wrong password
+     * @param username the login was attempted for
+     * @param ip of the client
+     */
+    public void onFailure(String username, String ip) {
+        long now = System.currentTimeMillis();
+        fail(accountKey(username), maxFailuresPerAccount, now);
+        fail(ipKey(ip), maxFailuresPerIp, now);
+    }
+
+    /**
+     * Forget the failed logins of an account once it logged in, the failures of the ip are kept
+     * @param username that logged in
+     */
+    public void onSuccess(String username) {
+        String key = accountKey(username);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    /**
+     * @return number of throttled keys, rejected logins and lockouts
+     */
+    public Map<String, Object> metrics() {
+        int entries = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries += stripe.size();
+            }
+        }
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("entries", entries);
+        metrics.put("rejected", rejected.sum());
+        metrics.put("lockouts", lockouts.sum());
+        return metrics;
+    }
+
+    private long retryAfter(String key, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Window window = stripe.get(key);
+            return window == null ? 0 : Math.max(0, window.lockedUntil - now);
+        }
+    }
+
+    private void fail(String key, int maxFailures, long now) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Window window = stripe.get(key);
+            if (window == null) {
+                window = new Window(now);
+                stripe.put(key, window);
+            }
+            if (window.lockouts > 0 && now - window.lockedUntil > windowMillis) {
+                // a whole window without failures since the last lockout ended
+                window.lockouts = 0;
+            }
+            window.roll(now, windowMillis);
+            window.current++;
+            if (window.count(now, windowMillis) >= maxFailures) {
+                window.lockouts++;
+                window.lockedUntil = now + Math.min(lockoutMillis << Math.min(window.lockouts - 1, 30), maxLockoutMillis);
+                window.reset(now);
+                lockouts.increment();
+            }
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static String accountKey(String username) {
+        return "account:" + (username == null ? "" : username.toLowerCase(Locale.ROOT));
+    }
+
+    private static String ipKey(String ip) {
+        return "ip:" + ip;
+    }
+
+    /**
+     * LRU map of a stripe, evicting its least recently used key once it is full
+     */
+    private static class Stripe extends LinkedHashMap<String, Window> {
+        private final int capacity;
+
+        Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Window> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Failures of a key in the current and the previous fixed window, and its lockout
+     */
+    private static class Window {
+        long start;
+        int previous;
+        int current;
+        long lockedUntil;
+        int lockouts;
+
+        Window(long now) {
+            this.start = now;
+        }
+
+        void roll(long now, long length) {
+            long elapsed = now - start;
+            if (elapsed >= 2 * length) {
+                reset(now);
+            } else if (elapsed >= length) {
+                previous = current;
+                current = 0;
+                start += length;
+            }
+        }
+
+        void reset(long now) {
+            start = now;
+            previous = 0;
+            current = 0;
+        }
+
+        /**
+         * @return failures in the sliding window ending now, the previous window weighted by its overlap
+         */
+        double count(long now, long length) {
+            double overlap = 1 - (double) (now - start) / length;
+            return previous * overlap + current;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.exercise.api.cache;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import io.exercise.api.actors.PrincipalCacheActor;
+import io.exercise.api.actors.PrincipalCacheActorProtocol;
+import io.exercise.api.models.User;
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+import net.sf.ehcache.Element;
+import net.sf.ehcache.config.CacheConfiguration;
+import net.sf.ehcache.statistics.StatisticsGateway;
+
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Bounded, time to live cache of the authenticated users by id, in the ehcache manager of the application,
+ * so that authenticating a request does not look its user up in the database every time.
+ * UserService invalidates users synchronously when it updates or deletes them, and the other nodes of the cluster
+ * are told through the {@value #TOPIC} pub-sub topic. The time to live bounds how long a node that missed
+ * a message can serve a stale user.
+ */
+@Singleton
+public class PrincipalCache {
+    public static final String TOPIC = "principal-cache";
+
+    public static final String NAME = "principals";
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final ActorRef mediator;
+
+    private final Ehcache cache;
+
+    /**
+     * Bumped on every invalidation, a lookup that started before an invalidation does not cache its result,
+     * which may have been read before the write that caused the invalidation
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Told about every invalidated user before the invalidation is counted
+     */
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    @Inject
+    public PrincipalCache(CacheManager cacheManager, Config config, ActorSystem actorSystem) {
+        this.cache = cacheManager.addCacheIfAbsent(new Cache(new CacheConfiguration(NAME, config.getInt("principal-cache.max-entries"))
+                .timeToLiveSeconds(config.getDuration("principal-cache.time-to-live", TimeUnit.SECONDS))
+                .eternal(false)));
+        this.mediator = DistributedPubSub.get(actorSystem).mediator();
+        actorSystem.actorOf(PrincipalCacheActor.props(this), "principal-cache");
+    }
+
+    /**
+     * Get a user from the cache, or load and cache it in case it is not cached yet
+     * @param id of the user
+     * @param loader loads the user from the database
+     * @return the user
+     */
+    public CompletableFuture<User> get(String id, Function<String, CompletableFuture<User>> loader) {
+        Element element = cache.get(id);
+        if (element != null) {
+            return CompletableFuture.completedFuture((User) element.getObjectValue());
+        }
+        long stamp = invalidations.get();
+        return loader.apply(id).thenApply(user -> {
+            if (invalidations.get() == stamp) {
+                cache.put(new Element(id, user));
+            }
+            return user;
+        });
+    }
+
+    /**
+     * Register a listener of the invalidations, e.g. to drop a lookup of the user in flight, which may have
+     * read the user before the change and must not be joined by the lookups after the invalidation
+     * @param listener called with the id of every invalidated user
+     */
+    public void onInvalidated(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    /**
+     * Invalidate a user that was updated or deleted, and let the other nodes know
+     * @param id of the user
+     */
+    public void invalidate(String id) {
+        apply(id);
+        mediator.tell(
+                new DistributedPubSubMediator.Publish(TOPIC, new PrincipalCacheActorProtocol.Invalidate(origin, id)),
+                ActorRef.noSender()
+        );
+    }
+
+    /**
+     * Apply an invalidation published by another node
+     * @param message the invalidation
+     */
+    public void onInvalidate(PrincipalCacheActorProtocol.Invalidate message) {
+        if (origin.equals(message.getOrigin())) {
+            return;
+        }
+        apply(message.getId());
+    }
+
+    private void apply(String id) {
+        // the lookups that see the new count must not join a lookup started before the invalidation
+        invalidationListeners.forEach(listener -> listener.accept(id));
+        invalidations.incrementAndGet();
+        cache.remove(id);
+    }
+
+    /**
+     * @return hit, miss, eviction and expiry counts of the cache, and its current size
+     */
+    public Map<String, Long> metrics() {
+        StatisticsGateway statistics = cache.getStatistics();
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("size", statistics.getSize());
+        metrics.put("hits", statistics.cacheHitCount());
+        metrics.put("misses", statistics.cacheMissCount());
+        metrics.put("evictions", statistics.cacheEvictedCount());
+        metrics.put("expirations", statistics.cacheExpiredCount());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+}
@@ -0,0 +1,173 @@
+package io.exercise.api.cache;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import io.exercise.api.actors.RoleHierarchyActor;
+import io.exercise.api.actors.RoleHierarchyActorProtocol;
+import io.exercise.api.models.Role;
+import io.exercise.api.mongo.DatabaseExecutionContext;
+import io.exercise.api.mongo.IMongoDB;
+import play.Logger;
+
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The closure of the role hierarchy: for every role, the role itself and all the roles it implies, directly
+ * or through other roles. Users only carry their direct roles, principals are compiled with the expanded ones,
+ * so the access checks and the acl filters stay a lookup per acl entry however deep the hierarchy is.
+ * The table is rebuilt from the roles collection after every change and the rebuilt table is sent to the other
+ * nodes of the cluster through the {@value #TOPIC} pub-sub topic. It is reloaded periodically as well,
+ * which bounds how long a node that missed a message works with a stale hierarchy.
+ */
+@Singleton
+public class RoleHierarchy {
+    public static final String TOPIC = "role-hierarchy";
+
+    public static final String NAME = "roleHierarchy";
+
+    public static final String COLLECTION = "roles";
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final ActorRef mediator;
+
+    private final IMongoDB mongoDB;
+
+    /**
+     * The closure, replaced as a whole and never changed in place
+     */
+    private volatile Map<String, Set<String>> closure = Map.of();
+
+    private final LongAdder rebuilds = new LongAdder();
+
+    private final LongAdder updates = new LongAdder();
+
+    @Inject
+    public RoleHierarchy(IMongoDB mongoDB, Config config, ActorSystem actorSystem, DatabaseExecutionContext executionContext) {
+        this.mongoDB = mongoDB;
+        this.mediator = DistributedPubSub.get(actorSystem).mediator();
+        actorSystem.actorOf(RoleHierarchyActor.props(this), "role-hierarchy");
+        refresh();
+        Duration interval = config.getDuration("role-hierarchy.refresh-interval");
+        actorSystem.scheduler().scheduleAtFixedRate(interval, interval, () -> executionContext.read(() -> {
+            refresh();
+            return null;
+        }), actorSystem.dispatcher());
+    }
+
+    /**
+     * Expand the direct roles of a user into its effective roles
+     * @param roles the direct roles
+     * @return the direct roles followed by the roles they imply
+     */
+    public Set<String> expand(Collection<String> roles) {
+        Map<String, Set<String>> current = closure;
+        Set<String> expanded = new LinkedHashSet<>(roles);
+        for (String role : roles) {
+            Set<String> implied = current.get(role);
+            if (implied != null) {
+                expanded.addAll(implied);
+            }
+        }
+        return expanded;
+    }
+
+    /**
+     * Rebuild the table after a role was saved, updated or deleted, and send it to the other nodes
+     */
+    public synchronized void rebuild() {
+        Map<String, Set<String>> rebuilt = closureOf(load());
+        closure = rebuilt;
+        rebuilds.increment();
+
+        Map<String, List<String>> message = new HashMap<>();
+        rebuilt.forEach((role, implied) -> message.put(role, new ArrayList<>(implied)));
+        mediator.tell(
+                new DistributedPubSubMediator.Publish(TOPIC, new RoleHierarchyActorProtocol.Update(origin, message)),
+                ActorRef.noSender()
+        );
+    }
+
+    /**
+     * Apply a table rebuilt by another node
+     * @param message the table
+     */
+    public void onUpdate(RoleHierarchyActorProtocol.Update message) {
+        if (origin.equals(message.getOrigin())) {
+            return;
+        }
+        Map<String, Set<String>> received = new HashMap<>();
+        message.getClosure().forEach((role, implied) -> received.put(role, Collections.unmodifiableSet(new LinkedHashSet<>(implied))));
+        synchronized (this) {
+            closure = Collections.unmodifiableMap(received);
+        }
+        updates.increment();
+    }
+
+    /**
+     * @return the number of roles with implied roles, the size of the table, and the rebuild and update counts
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Set<String>> current = closure;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("roles", current.size());
+        metrics.put("entries", current.values().stream().mapToInt(Set::size).sum());
+        metrics.put("rebuilds", rebuilds.sum());
+        metrics.put("updates", updates.sum());
+        return metrics;
+    }
+
+    /**
+     * Compute the closure of the hierarchy, a traversal of the roles each role implies. Cycles are allowed,
+     * the roles of a cycle imply each other
+     * @param inherits the roles each role directly implies
+     * @return the roles each role implies, itself included, for the roles that imply any
+     */
+    static Map<String, Set<String>> closureOf(Map<String, List<String>> inherits) {
+        Map<String, Set<String>> closure = new HashMap<>();
+        for (String role : inherits.keySet()) {
+            Set<String> reached = new LinkedHashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.add(role);
+            while (!pending.isEmpty()) {
+                String next = pending.poll();
+                if (reached.add(next)) {
+                    pending.addAll(inherits.getOrDefault(next, List.of()));
+                }
+            }
+            if (reached.size() > 1) {
+                closure.put(role, Collections.unmodifiableSet(reached));
+            }
+        }
+        return Collections.unmodifiableMap(closure);
+    }
+
+    private Map<String, List<String>> load() {
+        Map<String, List<String>> inherits = new HashMap<>();
+        mongoDB.getMongoDatabase()
+                .getCollection(COLLECTION, Role.class)
+                .find()
+                .forEach((Role role) -> inherits.put(role.getName(), role.getInherits() == null ? List.of() : role.getInherits()));
+        return inherits;
+    }
+
+    /**
+     * Reload the table, under the same lock as the rebuilds, so an older table never replaces a newer one
+     */
+    private synchronized void refresh() {
+        try {
+            closure = closureOf(load());
+        } catch (Exception ex) {
+            logger.error("Could not refresh the role hierarchy", ex);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package io.exercise.api.cache;
+
+import com.google.inject.Inject;
+import com.mongodb.client.model.Filters;
+import com.typesafe.config.Config;
+import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.models.User;
+import io.exercise.api.mongo.DatabaseExecutionContext;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.mongo.Publishers;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import play.libs.Json;
+import play.mvc.Http;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Loads the users requests are authenticated with, coalescing the concurrent lookups of the same user into one
+ * in flight future, and batching the lookups of different users arriving within a short window into one $in query.
+ * A dashboard page firing many parallel requests with the same token thereby costs a single query.
+ * An in flight lookup is only joined while its query is pending, a few milliseconds. Invalidating a user in the
+ * principal cache drops its lookup in flight, so the lookups after an invalidation start a new query
+ * instead of joining one that may have read the user before the change.
+ */
+@Singleton
+public class UserLoader {
+    public static final String NAME = "userLoader";
+
+    private final IMongoDB mongoDB;
+
+    private final DatabaseExecutionContext executionContext;
+
+    private final long windowMillis;
+
+    private final int maxBatch;
+
+    private final Map<String, CompletableFuture<User>> inFlight = new ConcurrentHashMap<>();
+
+    private List<Lookup> pending = new ArrayList<>();
+
+    private final LongAdder lookups = new LongAdder();
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder queries = new LongAdder();
+
+    @Inject
+    public UserLoader(IMongoDB mongoDB, DatabaseExecutionContext executionContext, Config config, PrincipalCache principalCache) {
+        this.mongoDB = mongoDB;
+        this.executionContext = executionContext;
+        this.windowMillis = config.getDuration("user-loader.window", TimeUnit.MILLISECONDS);
+        this.maxBatch = config.getInt("user-loader.max-batch");
+        principalCache.onInvalidated(this::forget);
+    }
+
+    /**
+     * Load a user, joining the lookup of the same user in case one is in flight
+     * @param id of the user
+     * @return the user
+     * @throws CompletionException with NOT_FOUND in case the user does not exist
+     */
+    public CompletableFuture<User> load(String id) {
+        lookups.increment();
+        CompletableFuture<User> future = new CompletableFuture<>();
+        CompletableFuture<User> existing = inFlight.putIfAbsent(id, future);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        boolean full;
+        boolean first;
+        synchronized (this) {
+            pending.add(new Lookup(id, future));
+            full = pending.size() >= maxBatch;
+            first = pending.size() == 1;
+        }
+        if (full) {
+            flush();
+        } else if (first) {
+            CompletableFuture.delayedExecutor(windowMillis, TimeUnit.MILLISECONDS).execute(this::flush);
+        }
+        return future;
+    }
+
+    /**
+     * Stop coalescing with the lookup of a user in flight, its query still completes the lookups that joined it
+     * @param id of the user
+     */
+    private void forget(String id) {
+        inFlight.remove(id);
+    }
+
+    /**
+     * @return lookups, lookups that joined an in flight one, queries run, and the lookups per query
+     */
+    public Map<String, Object> metrics() {
+        long lookups = this.lookups.sum();
+        long queries = this.queries.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("lookups", lookups);
+        metrics.put("coalesced", coalesced.sum());
+        metrics.put("queries", queries);
+        metrics.put("coalescingRatio", queries == 0 ? 0 : (double) lookups / queries);
+        return metrics;
+    }
+
+    /**
+     * Query the pending users, the batch may already have been taken by a flush of a full batch
+     */
+    private void flush() {
+        List<Lookup> lookups;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            lookups = pending;
+            pending = new ArrayList<>();
+        }
+        queries.increment();
+        query(Filters.in("_id", lookups.stream().map(lookup -> new ObjectId(lookup.id)).distinct().collect(Collectors.toList())))
+                .whenComplete((users, ex) -> {
+                    Map<String, User> byId = users == null
+                            ? Map.of()
+                            : users.stream().collect(Collectors.toMap(user -> user.getId().toString(), user -> user));
+                    for (Lookup lookup : lookups) {
+                        // a lookup started after an invalidation may be in flight for the same user by now
+                        inFlight.remove(lookup.id, lookup.future);
+                        User user = byId.get(lookup.id);
+                        if (ex != null) {
+                            lookup.future.completeExceptionally(ex);
+                        } else if (user == null) {
+                            lookup.future.completeExceptionally(new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("User doesn't exist!"))));
+                        } else {
+                            lookup.future.complete(user);
+                        }
+                    }
+                });
+    }
+
+    private CompletableFuture<List<User>> query(Bson filter) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toList(() -> mongoDB.getReactiveMongoDatabase()
+                    .getCollection("users", User.class)
+                    .find(filter));
+        }
+        return executionContext.auth(() -> mongoDB.getMongoDatabase()
+                .getCollection("users", User.class)
+                .find(filter)
+                .into(new ArrayList<>()));
+    }
+
+    private static class Lookup {
+        final String id;
+        final CompletableFuture<User> future;
+
+        Lookup(String id, CompletableFuture<User> future) {
+            this.id = id;
+            this.future = future;
+        }
+    }
+}
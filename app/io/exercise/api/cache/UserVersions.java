@@ -0,0 +1,120 @@
+package io.exercise.api.cache;
+
+import akka.actor.ActorSystem;
+import com.google.inject.Inject;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import com.typesafe.config.Config;
+import io.exercise.api.mongo.DatabaseExecutionContext;
+import io.exercise.api.mongo.IMongoDB;
+import org.bson.Document;
+import play.Logger;
+
+import javax.inject.Singleton;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versions of the users, used to revoke the stateless tokens of a user once it is updated or deleted.
+ * Every update or delete bumps the version of the user in the userVersions collection, and a token is only
+ * valid while it carries the current version. Only users that were ever changed have a version, so the table
+ * is small enough to be held in memory. It is reloaded periodically, which bounds how long a token revoked
+ * on another node is still accepted here, and bumped right away for the changes made on this node.
+ */
+@Singleton
+public class UserVersions {
+    public static final String COLLECTION = "userVersions";
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final IMongoDB mongoDB;
+
+    private final boolean enabled;
+
+    private volatile Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    @Inject
+    public UserVersions(IMongoDB mongoDB, Config config, ActorSystem actorSystem, DatabaseExecutionContext executionContext) {
+        this.mongoDB = mongoDB;
+        this.enabled = config.getBoolean("auth.stateless");
+        if (!enabled) {
+            return;
+        }
+        refresh();
+        Duration interval = config.getDuration("auth.versions-refresh-interval");
+        actorSystem.scheduler().scheduleAtFixedRate(interval, interval, () -> executionContext.read(() -> {
+            refresh();
+            return null;
+        }), actorSystem.dispatcher());
+    }
+
+    /**
+     * @return whether tokens carry the claims of their user, see {@link io.exercise.api.services.TokenService}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Read the current version of a user from the database, when signing a new token for it
+     * @param id of the user
+     * @return the version, 0 for users that were never changed
+     */
+    public long load(String id) {
+        Document found = collection().find(Filters.eq("_id", id)).first();
+        return found == null ? 0L : found.getLong("version");
+    }
+
+    /**
+     * Check a token against the version table
+     * @param id of the user the token was signed for
+     * @param version of the user the token carries
+     * @return whether the user was not changed since the token was signed
+     */
+    public boolean isCurrent(String id, long version) {
+        return version >= versions.getOrDefault(id, 0L);
+    }
+
+    /**
+     * Revoke the tokens of a user that was updated or deleted, nothing to do unless stateless tokens are enabled
+     * @param id of the user
+     */
+    public void bump(String id) {
+        if (!enabled) {
+            return;
+        }
+        Document updated = collection().findOneAndUpdate(
+                Filters.eq("_id", id),
+                Updates.inc("version", 1L),
+                new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER)
+        );
+        synchronized (this) {
+            versions.merge(id, updated.getLong("version"), Math::max);
+        }
+    }
+
+    private void refresh() {
+        try {
+            Map<String, Long> loaded = new ConcurrentHashMap<>();
+            collection().find()
+                    .projection(Projections.include("version"))
+                    .forEach((Document document) -> loaded.put(document.getString("_id"), document.getLong("version")));
+            // bumps made on this node while loading are kept, versions only ever grow
+            synchronized (this) {
+                versions.forEach((id, version) -> loaded.merge(id, version, Math::max));
+                versions = loaded;
+            }
+        } catch (Exception ex) {
+            logger.error("Could not refresh the user versions", ex);
+        }
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoDB.getMongoDatabase().getCollection(COLLECTION);
+    }
+}
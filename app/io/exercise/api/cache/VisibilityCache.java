@@ -0,0 +1,270 @@
+package io.exercise.api.cache;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.cluster.pubsub.DistributedPubSub;
+import akka.cluster.pubsub.DistributedPubSubMediator;
+import com.google.inject.Inject;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Projections;
+import com.typesafe.config.Config;
+import io.exercise.api.actors.VisibilityCacheActor;
+import io.exercise.api.actors.VisibilityCacheActorProtocol;
+import io.exercise.api.models.Principal;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.utils.ServiceUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import javax.inject.Singleton;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches which dashboards an access set (the id, roles and * of a principal) can read, as a bitmap over
+ * the slots of the {@link DashboardIndex}, so that listing dashboards selects a page of ids out of the bitmap
+ * instead of evaluating the read filter over the whole collection.
+ * Saves and updates set or clear the bit of the dashboard in every cached bitmap, here and, through the
+ * {@value #TOPIC} pub-sub topic, on the other nodes, bulk acl changes drop all bitmaps.
+ * Removed dashboards are cleared before their slot is reused.
+ * The bitmaps only narrow down the ids to fetch, the fetch still applies the read filter, so a bitmap that is
+ * behind a change can hide a dashboard until its time to live is over but never show one that is not readable.
+ * At most max-entries bitmaps of one bit per dashboard are kept, the least recently used are evicted.
+ */
+@Singleton
+public class VisibilityCache {
+    public static final String TOPIC = "visibility-cache";
+
+    public static final String NAME = "visibleDashboards";
+
+    private final String origin = UUID.randomUUID().toString();
+
+    private final ActorRef mediator;
+
+    private final IMongoDB mongoDB;
+
+    private final DashboardIndex dashboardIndex;
+
+    private final boolean enabled;
+
+    private final long timeToLiveMillis;
+
+    private final Map<Set<String>, Entry> entries;
+
+    /**
+     * Bumped on every change, guarded by this. A bitmap loaded while a change happened is not cached,
+     * it may have been read before the change
+     */
+    private long changes = 0;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    private final LongAdder updates = new LongAdder();
+
+    @Inject
+    public VisibilityCache(IMongoDB mongoDB, DashboardIndex dashboardIndex, Config config, ActorSystem actorSystem) {
+        this.mongoDB = mongoDB;
+        this.dashboardIndex = dashboardIndex;
+        this.enabled = config.getBoolean("visibility-cache.enabled");
+        this.timeToLiveMillis = config.getDuration("visibility-cache.time-to-live", TimeUnit.MILLISECONDS);
+        int maxEntries = config.getInt("visibility-cache.max-entries");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Set<String>, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.mediator = DistributedPubSub.get(actorSystem).mediator();
+        dashboardIndex.onRemoved(this::clear);
+        actorSystem.actorOf(VisibilityCacheActor.props(this), "visibility-cache");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Select the ids of the dashboards a principal can read, loading its bitmap in case it is not cached
+     * @param principal reading the dashboards
+     * @param after only select ids greater than this one, null to start from the first dashboard
+     * @param count number of ids to select
+     * @param rootsOnly whether to only select dashboards without a parent
+     * @return the ids in _id order, or null in case a readable dashboard is not in the index yet
+     */
+    public List<ObjectId> visible(Principal principal, ObjectId after, int count, boolean rootsOnly) {
+        BitSet visible = bitmapFor(principal);
+        if (visible == null) {
+            return null;
+        }
+        return dashboardIndex.smallest(visible, after, count, rootsOnly);
+    }
+
+    /**
+     * Update the bitmaps after a dashboard was saved or updated, and let the other nodes know
+     * @param id of the dashboard
+     * @param readACL of the dashboard
+     * @param writeACL of the dashboard
+     */
+    public void put(ObjectId id, List<String> readACL, List<String> writeACL) {
+        List<String> access = ServiceUtils.getAccessFor(readACL, writeACL);
+        apply(id, access);
+        mediator.tell(
+                new DistributedPubSubMediator.Publish(TOPIC, new VisibilityCacheActorProtocol.Update(origin, id.toHexString(), access)),
+                ActorRef.noSender()
+        );
+    }
+
+    /**
+     * Apply a change published by another node
+     * @param message the change
+     */
+    public void onUpdate(VisibilityCacheActorProtocol.Update message) {
+        if (origin.equals(message.getOrigin())) {
+            return;
+        }
+        apply(new ObjectId(message.getId()), message.getAccess());
+    }
+
+    /**
+     * Drop every bitmap, here and on the other nodes, after a change to the acls of too many dashboards
+     * to send one by one, e.g. sharing a whole subtree
+     */
+    public void invalidateAll() {
+        reset();
+        mediator.tell(
+                new DistributedPubSubMediator.Publish(TOPIC, new VisibilityCacheActorProtocol.InvalidateAll(origin)),
+                ActorRef.noSender()
+        );
+    }
+
+    /**
+     * Apply an invalidation published by another node
+     * @param message the invalidation
+     */
+    public void onInvalidateAll(VisibilityCacheActorProtocol.InvalidateAll message) {
+        if (origin.equals(message.getOrigin())) {
+            return;
+        }
+        reset();
+    }
+
+    /**
+     * Drop the bitmap of a principal, e.g. once it turned out to be behind a change
+     * @param principal whose bitmap is dropped
+     */
+    public synchronized void invalidate(Principal principal) {
+        entries.remove(principal.getAccessIds());
+    }
+
+    /**
+     * @return hit, miss, eviction, expiry and update counts, and the current number of bitmaps
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (this) {
+            metrics.put("size", entries.size());
+        }
+        metrics.put("hits", hits.sum());
+        metrics.put("misses", misses.sum());
+        metrics.put("evictions", evictions.sum());
+        metrics.put("expirations", expirations.sum());
+        metrics.put("updates", updates.sum());
+        return metrics;
+    }
+
+    private BitSet bitmapFor(Principal principal) {
+        Set<String> key = principal.getAccessIds();
+        long stamp;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.currentTimeMillis() - entry.loadedAt > timeToLiveMillis) {
+                entries.remove(key);
+                expirations.increment();
+                entry = null;
+            }
+            if (entry != null) {
+                hits.increment();
+                // the index may clear bits of removed dashboards while the copy is read
+                return (BitSet) entry.visible.clone();
+            }
+            stamp = changes;
+        }
+        misses.increment();
+
+        BitSet visible = new BitSet();
+        try (MongoCursor<Document> cursor = mongoDB.getMongoDatabase()
+                .getCollection("dashboards")
+                .find(principal.getReadFilter())
+                .projection(Projections.include("_id"))
+                .iterator()) {
+            while (cursor.hasNext()) {
+                int slot = dashboardIndex.slot(cursor.next().getObjectId("_id"));
+                if (slot == DashboardIndex.NONE) {
+                    return null;
+                }
+                visible.set(slot);
+            }
+        }
+
+        synchronized (this) {
+            if (changes == stamp) {
+                entries.put(key, new Entry((BitSet) visible.clone(), System.currentTimeMillis()));
+            }
+        }
+        return visible;
+    }
+
+    private void apply(ObjectId id, List<String> access) {
+        int slot = dashboardIndex.slot(id);
+        synchronized (this) {
+            changes++;
+            updates.increment();
+            if (slot == DashboardIndex.NONE) {
+                // the index has not seen the dashboard yet, the bitmaps can not tell its slot
+                entries.clear();
+                return;
+            }
+            for (Map.Entry<Set<String>, Entry> next : entries.entrySet()) {
+                Set<String> accessIds = next.getKey();
+                next.getValue().visible.set(slot, access.stream().anyMatch(accessIds::contains));
+            }
+        }
+    }
+
+    private synchronized void reset() {
+        changes++;
+        updates.increment();
+        entries.clear();
+    }
+
+    /**
+     * Clear the slot of a removed dashboard, called by the index before the slot can be reused
+     */
+    private synchronized void clear(int slot) {
+        changes++;
+        for (Entry entry : entries.values()) {
+            entry.visible.clear(slot);
+        }
+    }
+
+    private static class Entry {
+        final BitSet visible;
+        final long loadedAt;
+
+        Entry(BitSet visible, long loadedAt) {
+            this.visible = visible;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
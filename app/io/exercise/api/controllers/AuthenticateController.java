@@ -37,9 +37,8 @@ public class AuthenticateController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> authenticate(Http.Request request) {
         return serializationService.parseBodyOfType(request, AuthUserRequest.class)
-                .thenCompose((data) -> service.authenticate(data))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((data) -> service.authenticate(data, request.remoteAddress()))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 }
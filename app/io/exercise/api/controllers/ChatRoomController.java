@@ -2,18 +2,24 @@ package io.exercise.api.controllers;
 
 import akka.actor.ActorSystem;
 import akka.stream.Materializer;
+import akka.stream.javadsl.Flow;
 import com.auth0.jwt.exceptions.JWTCreationException;
-import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.google.inject.Inject;
 import com.mongodb.MongoException;
 import com.mongodb.client.model.Filters;
 import com.typesafe.config.Config;
 import io.exercise.api.actors.ChatActor;
+import io.exercise.api.cache.PrincipalCache;
+import io.exercise.api.cache.RoleHierarchy;
+import io.exercise.api.cache.UserLoader;
 import io.exercise.api.exceptions.RequestException;
 import io.exercise.api.models.ChatRoom;
-import io.exercise.api.models.User;
+import io.exercise.api.models.Principal;
+import io.exercise.api.mongo.DatabaseExecutionContext;
 import io.exercise.api.mongo.IMongoDB;
-import io.exercise.api.utils.ServiceUtils;
+import io.exercise.api.mongo.migrations.MigrationState;
+import io.exercise.api.services.TokenService;
+import io.exercise.api.utils.DatabaseUtils;
 import org.bson.types.ObjectId;
 import play.libs.F;
 import play.libs.Json;
@@ -32,6 +38,24 @@ public class ChatRoomController extends Controller {
     @Inject
     IMongoDB mongoDB;
 
+    @Inject
+    DatabaseExecutionContext executionContext;
+
+    @Inject
+    TokenService tokenService;
+
+    @Inject
+    PrincipalCache principalCache;
+
+    @Inject
+    UserLoader userLoader;
+
+    @Inject
+    RoleHierarchy roleHierarchy;
+
+    @Inject
+    MigrationState migrationState;
+
     @Inject
     Config config;
 
@@ -50,41 +74,39 @@ public class ChatRoomController extends Controller {
      * @see io.exercise.api.services.AuthenticateService
      */
     public WebSocket chat (String roomId, String token) {
-        return WebSocket.Text.acceptOrResult(request -> {
-           try {
-               User user = ServiceUtils
-                       .extractIdFrom(token)
-                       .thenCompose((id) -> ServiceUtils.getUserFrom(mongoDB, id))
-                       .thenCompose((usr) -> ServiceUtils.verifyTokenFor(usr, token, config))
-                       .join();
-
-               ChatRoom chatRoom = mongoDB.getMongoDatabase()
-                       .getCollection("chatRooms", ChatRoom.class)
-                       .find(Filters.eq("_id", new ObjectId(roomId)))
-                       .first();
-               if (chatRoom == null) {
-                   throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, "Room not found"));
-               }
-
-               if (!(ServiceUtils.containElementsInCommon(chatRoom.getReadACL(), user.getAccessIds())
-                       || (chatRoom.getReadACL().size() == 0 && chatRoom.getWriteACL().size() == 0))) {
-                   throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, "You cannot join this room!"));
-               }
-
-               return CompletableFuture.completedFuture(F.Either.Right(ActorFlow.actorRef((out) -> ChatActor.props(out, chatRoom, user), actorSystem, materializer)));
-           } catch (JWTVerificationException ex) {
-               ex.printStackTrace();
-               throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid signature/claims.")));
-           } catch (CompletionException ex) {
-               ex.printStackTrace();
-               throw ex;
-           } catch (MongoException ex) {
-               ex.printStackTrace();
-               throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
-           } catch (Exception ex) {
-               ex.printStackTrace();
-               throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, Json.toJson("Invalid")));
-           }
-        });
+        // the user, the room and the acl check are chained, so no thread is blocked waiting for the user lookup
+        return WebSocket.Text.acceptOrResult(request -> CompletableFuture.completedFuture(token)
+                .thenApply(tokenService::verify)
+                .thenCompose((decoded) -> principalCache.get(decoded.getIssuer(), userLoader::load))
+                .thenCompose((found) -> executionContext.read(() -> {
+                    try {
+                        Principal user = Principal.of(found, roleHierarchy.expand(found.getRoles()), migrationState);
+
+                        ChatRoom chatRoom = mongoDB.getMongoDatabase()
+                                .getCollection("chatRooms", ChatRoom.class)
+                                .find(Filters.eq("_id", new ObjectId(roomId)))
+                                .first();
+                        if (chatRoom == null) {
+                            throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, "Room not found"));
+                        }
+
+                        if (!(user.isIn(chatRoom.getReadACL())
+                                || (chatRoom.getReadACL().size() == 0 && chatRoom.getWriteACL().size() == 0))) {
+                            throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, "You cannot join this room!"));
+                        }
+
+                        return F.Either.<Result, Flow<String, String, ?>>Right(ActorFlow.actorRef((out) -> ChatActor.props(out, chatRoom, user), actorSystem, materializer));
+                    } catch (CompletionException ex) {
+                        ex.printStackTrace();
+                        throw ex;
+                    } catch (MongoException ex) {
+                        ex.printStackTrace();
+                        throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
+                        throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, Json.toJson("Invalid")));
+                    }
+                }))
+                .exceptionally((ex) -> F.Either.Left(DatabaseUtils.throwableToResult(ex))));
     }
 }
@@ -7,6 +7,7 @@ import io.exercise.api.actions.Validation;
 import io.exercise.api.models.dashboard.Content;
 import io.exercise.api.services.DashboardContentService;
 import io.exercise.api.services.SerializationService;
+import io.exercise.api.utils.CursorUtils;
 import io.exercise.api.utils.DatabaseUtils;
 import io.exercise.api.utils.ServiceUtils;
 import play.mvc.*;
@@ -28,18 +29,38 @@ public class DashboardContentController extends Controller {
     DashboardContentService service;
 
     /**
-     * Get a list of all the dashboard contents
-     * @param skip number of dashboard contents to skip per page
-     * @param limit number of dashboard contents to limit per page
+     * Get a page of the contents of a dashboard, the cursor of the next page is
+     * returned in the X-Next-Cursor header
+     * @param skip number of dashboard contents to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of dashboard contents per page
+     * @param stream whether to stream the response as chunked json (or ndjson) straight from the database,
+     * without a next cursor
+     * @param raw whether to pass the documents through from bson to json without decoding them into models
      * @param request request that contains the user token
-     * @return result containing all dashboard contents
-     * @throws CompletionException in case data is not found or an internal error occurred
+     * @param id of the parent dashboard
+     * @return result containing the page of dashboard contents
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
      * @see io.exercise.api.services.DashboardContentService
      */
-    public CompletableFuture<Result> all(int skip, int limit, Http.Request request, String id) {
-        return service.all(limit, skip, ServiceUtils.getUserFrom(request), id)
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+    public CompletableFuture<Result> all(int skip, String after, int limit, boolean stream, boolean raw, Http.Request request, String id) {
+        if (raw && stream) {
+            return service.streamRaw(skip, after, limit, ServiceUtils.getPrincipalFrom(request), id)
+                    .thenApply((source) -> serializationService.toChunkedResult(source, request))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        if (raw) {
+            return service.allRaw(skip, after, limit, ServiceUtils.getPrincipalFrom(request), id)
+                    .thenApply((page) -> CursorUtils.withNextCursor(serializationService.toResult(page.getData()), page.getNext()))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        if (stream) {
+            return service.stream(skip, after, limit, ServiceUtils.getPrincipalFrom(request), id)
+                    .thenApply((source) -> serializationService.toChunkedResult(source, request))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        return service.all(skip, after, limit, ServiceUtils.getPrincipalFrom(request), id)
+                .thenApply((page) -> CursorUtils.withNextCursor(serializationService.toResult(page.getData()), page.getNext()))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -54,9 +75,8 @@ public class DashboardContentController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> save(Http.Request request, String id) {
         return serializationService.parseBodyOfType(request, Content.class)
-                .thenCompose((data) -> service.save(ServiceUtils.getUserFrom(request), data, id))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((data) -> service.save(ServiceUtils.getPrincipalFrom(request), data, id))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -71,9 +91,8 @@ public class DashboardContentController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> update(Http.Request request, String id) {
         return serializationService.parseBodyOfType(request, Content.class)
-                .thenCompose((data) -> service.update(ServiceUtils.getUserFrom(request), data, id))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((data) -> service.update(ServiceUtils.getPrincipalFrom(request), data, id))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -88,9 +107,8 @@ public class DashboardContentController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> delete(Http.Request request, String id) {
         return serializationService.parseBodyOfType(request, Content.class)
-                .thenCompose((data) -> service.delete(ServiceUtils.getUserFrom(request), data))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((data) -> service.delete(ServiceUtils.getPrincipalFrom(request), data))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 }
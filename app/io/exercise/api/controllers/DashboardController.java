@@ -6,8 +6,11 @@ import com.mongodb.MongoException;
 import io.exercise.api.actions.Authenticated;
 import io.exercise.api.actions.Validation;
 import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.models.requests.MoveDashboardRequest;
+import io.exercise.api.models.requests.ShareDashboardRequest;
 import io.exercise.api.services.DashboardService;
 import io.exercise.api.services.SerializationService;
+import io.exercise.api.utils.CursorUtils;
 import io.exercise.api.utils.DatabaseUtils;
 import io.exercise.api.utils.ServiceUtils;
 import play.mvc.*;
@@ -29,34 +32,70 @@ public class DashboardController extends Controller {
     DashboardService service;
 
     /**
-     * Get a list of all the dashboards together with their items
-     * @param skip number of dashboards to skip per page
-     * @param limit number of dashboards to limit per page
+     * Get a page of the dashboards together with their items, the cursor of the next page is
+     * returned in the X-Next-Cursor header
+     * @param skip number of dashboards to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of dashboards per page
+     * @param stream whether to stream the response as chunked json (or ndjson) straight from the database,
+     * without a next cursor
+     * @param raw whether to pass the documents through from bson to json without decoding them into models
+     * @param request request that contains the user token
+     * @return result containing the page of dashboards
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.services.DashboardService
+     */
+    public CompletableFuture<Result> all(int skip, String after, int limit, boolean stream, boolean raw, Http.Request request) {
+        if (raw && stream) {
+            return service.streamRaw(skip, after, limit, ServiceUtils.getPrincipalFrom(request))
+                    .thenApply((source) -> serializationService.toChunkedResult(source, request))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        if (raw) {
+            return service.allRaw(skip, after, limit, ServiceUtils.getPrincipalFrom(request))
+                    .thenApply((page) -> CursorUtils.withNextCursor(serializationService.toResult(page.getData()), page.getNext()))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        if (stream) {
+            return service.stream(skip, after, limit, ServiceUtils.getPrincipalFrom(request))
+                    .thenApply((source) -> serializationService.toChunkedResult(source, request))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        return service.all(skip, after, limit, ServiceUtils.getPrincipalFrom(request))
+                .thenApply((page) -> CursorUtils.withNextCursor(serializationService.toResult(page.getData()), page.getNext()))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Get a page of root dashboards in a hierarchial manner, together with their descendants and items
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of root dashboards per page
+     * @param depth number of levels below the roots to return, negative for the whole trees
+     * @param includeItems whether to return the items of the dashboards, or only their number
      * @param request request that contains the user token
-     * @return result containing all dashboards
+     * @return result containing the page of dashboards in a hierarchical manner and the cursor of the next page
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.services.DashboardService
      */
-    public CompletableFuture<Result> all(int skip, int limit, Http.Request request) {
-        return service.all(skip, limit, ServiceUtils.getUserFrom(request))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+    public CompletableFuture<Result> hierarchy(String after, int limit, int depth, boolean includeItems, Http.Request request) {
+        return service.hierarchy(after, limit, depth, includeItems, ServiceUtils.getPrincipalFrom(request))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
     /**
-     * Get a list of all the dashboards in a hierarchial manner, together with their items
+     * Get the direct children of a dashboard, together with the number of their own children and items
      * @param skip number of dashboards to skip per page
      * @param limit number of dashboards to limit per page
      * @param request request that contains the user token
-     * @return result containing all dashboards in a hierarchical manner
+     * @param id of the parent dashboard
+     * @return result containing the children of the dashboard
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.services.DashboardService
      */
-    public CompletableFuture<Result> hierarchy(int skip, int limit, Http.Request request) {
-        return service.hierarchy(skip, limit, ServiceUtils.getUserFrom(request))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+    public CompletableFuture<Result> children(int skip, int limit, Http.Request request, String id) {
+        return service.children(skip, limit, ServiceUtils.getPrincipalFrom(request), id)
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -71,9 +110,8 @@ public class DashboardController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> save(Http.Request request) {
         return serializationService.parseBodyOfType(request, Dashboard.class)
-                .thenCompose((dashboard) -> service.save(ServiceUtils.getUserFrom(request), dashboard))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((dashboard) -> service.save(ServiceUtils.getPrincipalFrom(request), dashboard))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -88,9 +126,56 @@ public class DashboardController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> update(Http.Request request) {
         return serializationService.parseBodyOfType(request, Dashboard.class)
-                .thenCompose((dashboard) -> service.update(ServiceUtils.getUserFrom(request), dashboard))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((dashboard) -> service.update(ServiceUtils.getPrincipalFrom(request), dashboard))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Move a dashboard, together with all of its descendants, under a new parent
+     * @param request request that contains the new parent id and the user token
+     * @param id of the dashboard to be moved
+     * @return result containing the moved dashboard
+     * @throws CompletionException in case data is not found, the move would create a cycle or an internal error occurred
+     * @see io.exercise.api.services.DashboardService
+     */
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> move(Http.Request request, String id) {
+        return serializationService.parseBodyOfType(request, MoveDashboardRequest.class)
+                .thenCompose((data) -> service.move(ServiceUtils.getPrincipalFrom(request), id, data.getParentId()))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Start sharing a dashboard, together with all of its descendants and their items, with a user or role,
+     * or revoking the access of a user or role to them, as a background job
+     * @param request request that contains the user or role to share with and the user token
+     * @param id of the root dashboard of the subtree
+     * @return result containing the started job
+     * @throws CompletionException in case data is not found, too many bulk jobs are running or an internal error occurred
+     * @see io.exercise.api.services.DashboardService
+     */
+    @Validation(type = ShareDashboardRequest.class)
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> share(Http.Request request, String id) {
+        return serializationService.parseBodyOfType(request, ShareDashboardRequest.class)
+                .thenCompose((data) -> service.share(ServiceUtils.getPrincipalFrom(request), id, data))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Get the progress of a share job
+     * @param request request that contains the user token
+     * @param jobId of the job
+     * @return result containing the job
+     * @throws CompletionException in case data is not found or an internal error occurred
+     * @see io.exercise.api.services.DashboardService
+     */
+    public CompletableFuture<Result> shareJob(Http.Request request, String jobId) {
+        return service.shareJob(ServiceUtils.getPrincipalFrom(request), jobId)
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -105,9 +190,8 @@ public class DashboardController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> delete(Http.Request request) {
         return serializationService.parseBodyOfType(request, Dashboard.class)
-                .thenCompose((dashboard) -> service.delete(ServiceUtils.getUserFrom(request), dashboard))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((dashboard) -> service.delete(ServiceUtils.getPrincipalFrom(request), dashboard))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 }
@@ -0,0 +1,35 @@
+package io.exercise.api.controllers;
+
+import com.google.inject.Inject;
+import io.exercise.api.actions.Authenticated;
+import io.exercise.api.services.MetricsService;
+import io.exercise.api.services.SerializationService;
+import io.exercise.api.utils.DatabaseUtils;
+import play.mvc.*;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MetricsController exposes the runtime metrics of the application.
+ */
+public class MetricsController extends Controller {
+
+    @Inject
+    SerializationService serializationService;
+
+    @Inject
+    MetricsService service;
+
+    /**
+     * Get the current metrics
+     * @param request request that contains the user token
+     * @return result containing the metrics, grouped by the component they belong to
+     * @see io.exercise.api.services.MetricsService
+     */
+    @Authenticated
+    public CompletableFuture<Result> metrics(Http.Request request) {
+        return service.metrics()
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+}
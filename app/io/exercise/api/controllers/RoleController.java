@@ -0,0 +1,90 @@
+package io.exercise.api.controllers;
+
+import com.google.inject.Inject;
+import io.exercise.api.actions.Authenticated;
+import io.exercise.api.actions.Validation;
+import io.exercise.api.models.Role;
+import io.exercise.api.services.RoleService;
+import io.exercise.api.services.SerializationService;
+import io.exercise.api.utils.DatabaseUtils;
+import io.exercise.api.utils.ServiceUtils;
+import play.mvc.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * RoleController contains methods for CRUD operations on roles and the roles they inherit.
+ */
+@Authenticated
+public class RoleController extends Controller {
+
+    @Inject
+    SerializationService serializationService;
+
+    @Inject
+    RoleService service;
+
+    /**
+     * Get all the roles
+     * @param request request that contains the user token
+     * @return result containing the roles
+     * @throws CompletionException in case an internal error occurred
+     * @see io.exercise.api.services.RoleService
+     */
+    public CompletableFuture<Result> all(Http.Request request) {
+        return service.all(ServiceUtils.getPrincipalFrom(request))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Save a role into the database
+     * @param request request that contains the role and the user token
+     * @return result containing the added role
+     * @throws CompletionException in case the role already exists, inherits roles the user does not have
+     * or an internal error occurred
+     * @see io.exercise.api.services.RoleService
+     */
+    @Validation(type = Role.class)
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> save(Http.Request request) {
+        return serializationService.parseBodyOfType(request, Role.class)
+                .thenCompose((role) -> service.save(ServiceUtils.getPrincipalFrom(request), role))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Update a role in the database
+     * @param request request that contains the role and the user token
+     * @return result containing the updated role
+     * @throws CompletionException in case data is not found, the role would inherit roles the user does not have
+     * or an internal error occurred
+     * @see io.exercise.api.services.RoleService
+     */
+    @Validation(type = Role.class)
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> update(Http.Request request) {
+        return serializationService.parseBodyOfType(request, Role.class)
+                .thenCompose((role) -> service.update(ServiceUtils.getPrincipalFrom(request), role))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+
+    /**
+     * Delete a role from the database
+     * @param request request that contains the role and the user token
+     * @return result containing the deleted role
+     * @throws CompletionException in case data is not found or an internal error occurred
+     * @see io.exercise.api.services.RoleService
+     */
+    @Validation(type = Role.class)
+    @BodyParser.Of(BodyParser.Json.class)
+    public CompletableFuture<Result> delete(Http.Request request) {
+        return serializationService.parseBodyOfType(request, Role.class)
+                .thenCompose((role) -> service.delete(ServiceUtils.getPrincipalFrom(request), role))
+                .thenApply((data) -> serializationService.toResult(data))
+                .exceptionally(DatabaseUtils::throwableToResult);
+    }
+}
@@ -7,6 +7,7 @@ import io.exercise.api.actions.Validation;
 import io.exercise.api.models.User;
 import io.exercise.api.services.SerializationService;
 import io.exercise.api.services.UserService;
+import io.exercise.api.utils.CursorUtils;
 import io.exercise.api.utils.DatabaseUtils;
 import io.exercise.api.utils.ServiceUtils;
 import play.mvc.*;
@@ -27,19 +28,26 @@ public class UserController extends Controller {
     UserService service;
 
     /**
-     * Get a list of all the users
-     * @param skip number of users to skip per page
-     * @param limit number of users to limit per page
+     * Get a page of the users, the cursor of the next page is returned in the X-Next-Cursor header
+     * @param skip number of users to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of users per page
+     * @param stream whether to stream the response as chunked json (or ndjson) straight from the database,
+     * without a next cursor
      * @param request request that contains the user token
-     * @return result containing all users
-     * @throws CompletionException in case data is not found or an internal error occurred
+     * @return result containing the page of users
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
      * @see io.exercise.api.services.UserService
      */
     @Authenticated
-    public CompletableFuture<Result> all(int skip, int limit, Http.Request request) {
-        return service.all(skip, limit, ServiceUtils.getUserFrom(request))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+    public CompletableFuture<Result> all(int skip, String after, int limit, boolean stream, Http.Request request) {
+        if (stream) {
+            return service.stream(skip, after, limit, ServiceUtils.getPrincipalFrom(request))
+                    .thenApply((source) -> serializationService.toChunkedResult(source, request))
+                    .exceptionally(DatabaseUtils::throwableToResult);
+        }
+        return service.all(skip, after, limit, ServiceUtils.getPrincipalFrom(request))
+                .thenApply((page) -> CursorUtils.withNextCursor(serializationService.toResult(page.getData()), page.getNext()))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -55,8 +63,7 @@ public class UserController extends Controller {
     public CompletableFuture<Result> save(Http.Request request) {
         return serializationService.parseBodyOfType(request, User.class)
                 .thenCompose((data) -> service.save(data))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -72,9 +79,8 @@ public class UserController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> update(Http.Request request, String id) {
         return serializationService.parseBodyOfType(request, User.class)
-                .thenCompose((data) -> service.update(data, id, ServiceUtils.getUserFrom(request)))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((data) -> service.update(data, id, ServiceUtils.getPrincipalFrom(request)))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 
@@ -90,9 +96,8 @@ public class UserController extends Controller {
     @BodyParser.Of(BodyParser.Json.class)
     public CompletableFuture<Result> delete(Http.Request request, String id) {
         return serializationService.parseBodyOfType(request, User.class)
-                .thenCompose((data) -> service.delete(data, id, ServiceUtils.getUserFrom(request)))
-                .thenCompose((data) -> serializationService.toJsonNode(data))
-                .thenApply(Results::ok)
+                .thenCompose((data) -> service.delete(data, id, ServiceUtils.getPrincipalFrom(request)))
+                .thenApply((data) -> serializationService.toResult(data))
                 .exceptionally(DatabaseUtils::throwableToResult);
     }
 }
@@ -0,0 +1,49 @@
+package io.exercise.api.models;
+
+import io.exercise.api.utils.CursorUtils;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset paginated list. The next cursor points after the last returned element,
+ * is to be sent back as the after parameter, and is null on the last page.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class Page<T> {
+    private List<T> data;
+
+    private String next;
+
+    /**
+     * Build a page out of a list fetched with one element more than the limit, the extra element
+     * only tells that there is a next page and is dropped
+     * @param fetched elements sorted by id, at most limit + 1
+     * @param limit number of elements per page
+     * @return the page
+     */
+    public static <T extends BaseModel> Page<T> of(List<T> fetched, int limit) {
+        return of(fetched, limit, BaseModel::getId);
+    }
+
+    /**
+     * Build a page out of a list fetched with one element more than the limit
+     * @param fetched elements sorted by id, at most limit + 1
+     * @param limit number of elements per page
+     * @param id of an element
+     * @return the page
+     */
+    public static <T> Page<T> of(List<T> fetched, int limit, Function<T, ObjectId> id) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> data = fetched.subList(0, limit);
+        return new Page<>(data, data.isEmpty() ? null : CursorUtils.encode(id.apply(data.get(data.size() - 1))));
+    }
+}
@@ -0,0 +1,127 @@
+package io.exercise.api.models;
+
+import io.exercise.api.mongo.migrations.MigrationState;
+import io.exercise.api.utils.ServiceUtils;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.bson.conversions.Bson;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The user a request is authenticated as, compiled once per request for the access checks of the services:
+ * its access ids (its id, its roles including the implied ones and *) as a set, its roles as a bitset over
+ * the interned role names, and the read and write filters of its access ids, built once instead of on every query.
+ * Immutable, so it can be shared by everything the request runs.
+ */
+@Getter
+public final class Principal {
+    public static final String PUBLIC = "*";
+
+    /**
+     * Index of every role name a principal was compiled with, only ever grows with the roles, which are few
+     */
+    private static final Map<String, Integer> ROLE_INDEXES = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger NEXT_ROLE_INDEX = new AtomicInteger();
+
+    private final User user;
+
+    private final String id;
+
+    private final Set<String> accessIds;
+
+    private final Bson readFilter;
+
+    private final Bson writeFilter;
+
+    @Getter(AccessLevel.NONE)
+    private final BitSet roles;
+
+    private Principal(User user, Collection<String> roles, MigrationState migrationState) {
+        this.user = user;
+        this.id = user.getId().toString();
+
+        List<String> accessIds = new ArrayList<>();
+        accessIds.add(id);
+        accessIds.addAll(roles);
+        accessIds.add(PUBLIC);
+        this.accessIds = Collections.unmodifiableSet(new LinkedHashSet<>(accessIds));
+
+        this.roles = new BitSet();
+        for (String role : roles) {
+            this.roles.set(ROLE_INDEXES.computeIfAbsent(role, (name) -> NEXT_ROLE_INDEX.getAndIncrement()));
+        }
+
+        this.readFilter = ServiceUtils.getReadAccessFilterFor(accessIds, migrationState);
+        this.writeFilter = ServiceUtils.getWriteAccessFilterFor(accessIds, migrationState);
+    }
+
+    /**
+     * Compile the principal of an authenticated user with its direct roles only
+     * @param user the request is authenticated as
+     * @param migrationState the filters are built for
+     * @return the principal
+     */
+    public static Principal of(User user, MigrationState migrationState) {
+        return new Principal(user, user.getRoles(), migrationState);
+    }
+
+    /**
+     * Compile the principal of an authenticated user with its effective roles
+     * @param user the request is authenticated as
+     * @param roles the roles of the user expanded through the role hierarchy, see {@link io.exercise.api.cache.RoleHierarchy}
+     * @param migrationState the filters are built for
+     * @return the principal
+     */
+    public static Principal of(User user, Collection<String> roles, MigrationState migrationState) {
+        return new Principal(user, roles, migrationState);
+    }
+
+    public String getUsername() {
+        return user.getUsername();
+    }
+
+    /**
+     * Check whether any of the access ids of the principal is in an access control list, without allocating
+     * @param acl the access control list
+     * @return true in case the principal is in the list
+     */
+    public boolean isIn(List<String> acl) {
+        for (int i = 0, size = acl.size(); i < size; i++) {
+            String entry = acl.get(i);
+            if (entry.equals(id) || entry.equals(PUBLIC)) {
+                return true;
+            }
+            Integer index = ROLE_INDEXES.get(entry);
+            if (index != null && roles.get(index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the principal may read an object, the same check as the read filter
+     * @param object to be read
+     * @return true in case the object is public or the principal is in its read or write list
+     */
+    public boolean hasReadAccessFor(BaseModel object) {
+        return isPublic(object) || isIn(object.getReadACL()) || isIn(object.getWriteACL());
+    }
+
+    /**
+     * Check whether the principal may update or delete an object, the same check as the write filter
+     * @param object to be written
+     * @return true in case the object is public or the principal is in its write list
+     */
+    public boolean hasReadWriteAccessFor(BaseModel object) {
+        return isPublic(object) || isIn(object.getWriteACL());
+    }
+
+    private static boolean isPublic(BaseModel object) {
+        return object.getWriteACL().isEmpty() && object.getReadACL().isEmpty();
+    }
+}
@@ -0,0 +1,35 @@
+package io.exercise.api.models;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.exercise.api.mongo.serializers.RawModelSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A model read as raw BSON, for read only endpoints that pass the documents through to json
+ * without decoding them into their models.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@JsonSerialize(using = RawModelSerializer.class)
+public class RawModel {
+    private RawBsonDocument document;
+
+    // Lists of other documents written as additional fields, e.g. the items of a dashboard, null to leave a field out
+    private Map<String, List<RawBsonDocument>> embedded;
+
+    public RawModel(RawBsonDocument document) {
+        this(document, Map.of());
+    }
+
+    public ObjectId getId() {
+        return document.getObjectId("_id").getValue();
+    }
+}
@@ -1,14 +1,25 @@
 package io.exercise.api.models;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.List;
 
+@AllArgsConstructor
+@NoArgsConstructor
 @Data
+@EqualsAndHashCode(callSuper = true)
 public class Role extends BaseModel {
 
     @NotEmpty(message = "cannot be empty!")
     @Size(min = 5, message = "should have at least 2 characters")
     String name;
+
+    // the roles this role implies, a user with this role has all of them as well
+    List<String> inherits = new ArrayList<>();
 }
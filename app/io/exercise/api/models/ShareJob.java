@@ -0,0 +1,76 @@
+package io.exercise.api.models;
+
+import io.exercise.api.models.enums.ShareJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.Document;
+
+import java.util.Date;
+
+/**
+ * Progress of sharing a dashboard subtree with a user or role, as reported to the user who started it.
+ * Stored as a plain document in the shareJobs collection, so that any node can report it.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ShareJob {
+    public static final String COLLECTION = "shareJobs";
+
+    private String id;
+
+    private String dashboardId;
+
+    private String principal;
+
+    private boolean write;
+
+    private boolean revoke;
+
+    private ShareJobStatus status;
+
+    // number of dashboards in the subtree, known once the subtree has been collected
+    private long dashboards;
+
+    // number of dashboards of the subtree processed so far
+    private long processed;
+
+    // number of dashboards and items actually changed, the others already had the requested access
+    // or are not writable by the user who started the job
+    private long updatedDashboards;
+
+    private long updatedContents;
+
+    private String error;
+
+    private Long startedAt;
+
+    private Long completedAt;
+
+    /**
+     * @param document stored in the shareJobs collection
+     * @return the job
+     */
+    public static ShareJob from(Document document) {
+        ShareJob job = new ShareJob();
+        job.setId(document.getObjectId("_id").toHexString());
+        job.setDashboardId(document.getObjectId("dashboardId").toHexString());
+        job.setPrincipal(document.getString("principal"));
+        job.setWrite(document.getBoolean("write", false));
+        job.setRevoke(document.getBoolean("revoke", false));
+        job.setStatus(ShareJobStatus.valueOf(document.getString("status")));
+        job.setDashboards(document.get("dashboards", 0L));
+        job.setProcessed(document.get("processed", 0L));
+        job.setUpdatedDashboards(document.get("updatedDashboards", 0L));
+        job.setUpdatedContents(document.get("updatedContents", 0L));
+        job.setError(document.getString("error"));
+        job.setStartedAt(millis(document.getDate("startedAt")));
+        job.setCompletedAt(millis(document.getDate("completedAt")));
+        return job;
+    }
+
+    private static Long millis(Date date) {
+        return date == null ? null : date.getTime();
+    }
+}
@@ -20,7 +20,7 @@ import javax.validation.constraints.NotEmpty;
 @NoArgsConstructor
 @Data
 @EqualsAndHashCode(callSuper = true)
-@JsonTypeInfo(use=JsonTypeInfo.Id.NAME, property="type", visible = true)
+@JsonTypeInfo(use=JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.EXISTING_PROPERTY, property="type", visible = true)
 @JsonSubTypes({
         @JsonSubTypes.Type(value= EmailContent.class, name = "EMAIL"),
         @JsonSubTypes.Type(value= ImageContent.class, name = "IMAGE"),
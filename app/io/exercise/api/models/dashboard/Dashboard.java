@@ -1,8 +1,11 @@
 package io.exercise.api.models.dashboard;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import io.exercise.api.models.BaseModel;
+import io.exercise.api.mongo.serializers.ListObjectIdDeSerializer;
+import io.exercise.api.mongo.serializers.ListObjectIdSerializer;
 import io.exercise.api.mongo.serializers.ObjectIdDeSerializer;
 import io.exercise.api.mongo.serializers.ObjectIdStringSerializer;
 import lombok.AllArgsConstructor;
@@ -35,6 +38,16 @@ public class Dashboard extends BaseModel {
     @JsonDeserialize(using = ObjectIdDeSerializer.class)
     private ObjectId parentId;
 
+    // Materialized path, the ids of all parents from the root down to the direct parent.
+    // Derived from the parent id on save, so it is left out of equality
+    @EqualsAndHashCode.Exclude
+    @JsonSerialize(using = ListObjectIdSerializer.class)
+    @JsonDeserialize(using = ListObjectIdDeSerializer.class)
+    private List<ObjectId> ancestors = new ArrayList<>();
+
+    @EqualsAndHashCode.Exclude
+    private int depth;
+
     @BsonIgnore
     @BsonProperty("children")
     List<Dashboard> children = new ArrayList<>();
@@ -43,6 +56,23 @@ public class Dashboard extends BaseModel {
     @BsonProperty("items")
     List<Content> items = new ArrayList<>();
 
+    // Number of visible children and items, only set where they are not returned themselves
+    @BsonIgnore
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Integer childCount;
+
+    @BsonIgnore
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    Integer itemCount;
+
+    public Dashboard(String name, String description, ObjectId parentId, List<Dashboard> children, List<Content> items) {
+        this.name = name;
+        this.description = description;
+        this.parentId = parentId;
+        this.children = children;
+        this.items = items;
+    }
+
     @Override
     public Dashboard clone() throws CloneNotSupportedException {
         Dashboard clone = (Dashboard) super.clone();
@@ -50,8 +80,12 @@ public class Dashboard extends BaseModel {
         clone.setName(this.getName());
         clone.setDescription(this.getDescription());
         clone.setParentId(this.parentId);
+        clone.setAncestors(this.getAncestors());
+        clone.setDepth(this.getDepth());
         clone.setChildren(this.getChildren());
         clone.setItems(this.getItems());
+        clone.setChildCount(this.getChildCount());
+        clone.setItemCount(this.getItemCount());
         clone.setUpdatedAt(this.getUpdatedAt());
         return clone;
     }
@@ -0,0 +1,7 @@
+package io.exercise.api.models.enums;
+
+public enum ShareJobStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,21 @@
+package io.exercise.api.models.requests;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import io.exercise.api.mongo.serializers.ObjectIdDeSerializer;
+import io.exercise.api.mongo.serializers.ObjectIdStringSerializer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.types.ObjectId;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class MoveDashboardRequest {
+
+    // the new parent, null to move the dashboard to the root level
+    @JsonSerialize(using = ObjectIdStringSerializer.class)
+    @JsonDeserialize(using = ObjectIdDeSerializer.class)
+    ObjectId parentId;
+}
@@ -0,0 +1,23 @@
+package io.exercise.api.models.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ShareDashboardRequest {
+
+    // the id of a user or a role
+    @NotEmpty(message = "Principal cannot be empty!")
+    String principal;
+
+    // whether to grant write access as well, granting only read access otherwise
+    boolean write;
+
+    // whether to remove the principal from the read and write lists instead
+    boolean revoke;
+}
@@ -2,9 +2,12 @@ package io.exercise.api.modules;
 
 import com.google.inject.AbstractModule;
 import com.typesafe.config.Config;
+import io.exercise.api.cache.DashboardIndex;
 import io.exercise.api.mongo.IMongoDB;
 import io.exercise.api.mongo.InMemoryMongoDB;
 import io.exercise.api.mongo.MongoDB;
+import io.exercise.api.mongo.ReactiveMongoDB;
+import io.exercise.api.mongo.migrations.MigrationRunner;
 import play.Environment;
 import play.Logger;
 
@@ -23,8 +26,12 @@ public class DatabaseModule extends AbstractModule {
         Logger.of(this.getClass()).debug("Running on mode {}", mode);
         if (mode.equalsIgnoreCase("test")) {
             bind(IMongoDB.class).to(InMemoryMongoDB.class).asEagerSingleton();
-            return;
+        } else if (config.getString("mongo.driver").equalsIgnoreCase("reactive")) {
+            bind(IMongoDB.class).to(ReactiveMongoDB.class).asEagerSingleton();
+        } else {
+            bind(IMongoDB.class).to(MongoDB.class).asEagerSingleton();
         }
-        bind(IMongoDB.class).to(MongoDB.class).asEagerSingleton();
+        bind(DashboardIndex.class).asEagerSingleton();
+        bind(MigrationRunner.class).asEagerSingleton();
     }
 }
\ No newline at end of file
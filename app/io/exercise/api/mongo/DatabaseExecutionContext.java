@@ -0,0 +1,229 @@
+package io.exercise.api.mongo;
+
+import akka.Done;
+import akka.actor.CoordinatedShutdown;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import io.exercise.api.exceptions.RequestException;
+import play.Logger;
+import play.libs.Json;
+import play.mvc.Http;
+
+import javax.inject.Singleton;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded executors the blocking database calls run on, instead of the http dispatcher.
+ * Reads, writes, authentication and bulk jobs (cascading deletes, imports, moves) each get their own lane,
+ * so that a slow bulk job can only ever exhaust its own lane and never the login path or the http threads.
+ * Every lane has a bounded queue, work submitted to a full lane is rejected with 503 Service Unavailable
+ * instead of queueing up without limit.
+ * <p>
+ * In the pools mode every lane is a fixed pool of platform threads. In the virtual mode every call gets its
+ * own virtual thread and a semaphore per lane limits how many of them use a mongo connection at the same time,
+ * so thousands of calls can wait for a connection without a platform thread each.
+ * Virtual threads need java 21, on older runtimes the virtual mode falls back to the pools.
+ */
+@Singleton
+public class DatabaseExecutionContext {
+    public static final String POOLS = "pools";
+    public static final String VIRTUAL = "virtual";
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    private final String mode;
+    private final ExecutorService virtualThreads;
+    private final Lane read;
+    private final Lane write;
+    private final Lane auth;
+    private final Lane bulk;
+
+    @Inject
+    public DatabaseExecutionContext(Config config, CoordinatedShutdown coordinatedShutdown) {
+        ExecutorService virtual = null;
+        if (config.getString("database-executors.mode").equalsIgnoreCase(VIRTUAL)) {
+            virtual = virtualThreadPerTaskExecutor();
+            if (virtual == null) {
+                logger.warn("Virtual threads are not available on java {}, falling back to the database pools", Runtime.version().feature());
+            }
+        }
+        this.virtualThreads = virtual;
+        this.mode = virtual != null ? VIRTUAL : POOLS;
+        this.read = lane("read", config.getConfig("database-executors.read"));
+        this.write = lane("write", config.getConfig("database-executors.write"));
+        this.auth = lane("auth", config.getConfig("database-executors.auth"));
+        this.bulk = lane("bulk", config.getConfig("database-executors.bulk"));
+
+        coordinatedShutdown.addTask(CoordinatedShutdown.PhaseServiceRequestsDone(), "shutting-down-database-executors", () -> {
+            logger.debug("Shutting down database executors!");
+            List.of(read, write, auth, bulk).forEach(Lane::shutdown);
+            if (virtualThreads != null) {
+                virtualThreads.shutdown();
+            }
+            return CompletableFuture.completedFuture(Done.done());
+        });
+    }
+
+    /**
+     * @return the mode actually in use, virtual or pools
+     */
+    public String getMode() {
+        return mode;
+    }
+
+    /**
+     * Run a query on the read lane
+     * @param supplier the query
+     * @return the result of the query, or a 503 in case the lane is saturated
+     */
+    public <T> CompletableFuture<T> read(Supplier<T> supplier) {
+        return read.supply(supplier);
+    }
+
+    /**
+     * Run an insert, update or delete of a single document on the write lane
+     * @param supplier the write
+     * @return the result of the write, or a 503 in case the lane is saturated
+     */
+    public <T> CompletableFuture<T> write(Supplier<T> supplier) {
+        return write.supply(supplier);
+    }
+
+    /**
+     * Run a lookup of the login and token verification path on the auth lane
+     * @param supplier the lookup
+     * @return the result of the lookup, or a 503 in case the lane is saturated
+     */
+    public <T> CompletableFuture<T> auth(Supplier<T> supplier) {
+        return auth.supply(supplier);
+    }
+
+    /**
+     * Run a job touching many documents, e.g. a cascading delete or an import, on the bulk lane
+     * @param supplier the job
+     * @return the result of the job, or a 503 in case the lane is saturated
+     */
+    public <T> CompletableFuture<T> bulk(Supplier<T> supplier) {
+        return bulk.supply(supplier);
+    }
+
+    private Lane lane(String name, Config config) {
+        if (virtualThreads != null) {
+            return new VirtualLane(virtualThreads, config.getInt("threads"), config.getInt("queue-size"));
+        }
+        return new PoolLane(name, config.getInt("threads"), config.getInt("queue-size"));
+    }
+
+    private static <T> CompletableFuture<T> rejected() {
+        return CompletableFuture.failedFuture(
+                new CompletionException(new RequestException(Http.Status.SERVICE_UNAVAILABLE, Json.toJson("Service busy, try again later!")))
+        );
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor is looked up reflectively, so the application still builds
+     * and runs on java versions without virtual threads
+     * @return the executor, or null in case virtual threads are not available
+     */
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    private interface Lane {
+        <T> CompletableFuture<T> supply(Supplier<T> supplier);
+
+        void shutdown();
+    }
+
+    /**
+     * A fixed size pool of platform threads with a bounded queue, which rejects the work submitted while the queue is full
+     */
+    private static class PoolLane implements Lane {
+        private final ThreadPoolExecutor executor;
+
+        PoolLane(String name, int threads, int queueSize) {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = (runnable) -> {
+                Thread thread = new Thread(runnable, "database-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setContextClassLoader(classLoader);
+                return thread;
+            };
+            this.executor = new ThreadPoolExecutor(
+                    threads,
+                    threads,
+                    0L,
+                    TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueSize),
+                    factory,
+                    new ThreadPoolExecutor.AbortPolicy()
+            );
+        }
+
+        @Override
+        public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+            try {
+                return CompletableFuture.supplyAsync(supplier, executor);
+            } catch (RejectedExecutionException ex) {
+                return rejected();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A virtual thread per call, with a semaphore in front of the mongo connection pool. At most threads calls
+     * of the lane run at the same time, at most queue-size more wait for a permit, anything beyond that is rejected
+     */
+    private static class VirtualLane implements Lane {
+        private final ExecutorService executor;
+        private final Semaphore permits;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final int limit;
+
+        VirtualLane(ExecutorService executor, int threads, int queueSize) {
+            this.executor = executor;
+            this.permits = new Semaphore(threads);
+            this.limit = threads + queueSize;
+        }
+
+        @Override
+        public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+            if (inFlight.incrementAndGet() > limit) {
+                inFlight.decrementAndGet();
+                return rejected();
+            }
+            try {
+                return CompletableFuture.supplyAsync(() -> {
+                    permits.acquireUninterruptibly();
+                    try {
+                        return supplier.get();
+                    } finally {
+                        permits.release();
+                        inFlight.decrementAndGet();
+                    }
+                }, executor);
+            } catch (RejectedExecutionException ex) {
+                inFlight.decrementAndGet();
+                return rejected();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            // the virtual thread executor is shared by all lanes and shut down once
+        }
+    }
+}
@@ -9,4 +9,16 @@ import com.mongodb.client.MongoDatabase;
 public interface IMongoDB {
 	public MongoDatabase getMongoDatabase();
 	public MongoClient getMongoClient();
+
+	/**
+	 * The database on the reactive streams driver, its queries do not hold a thread while waiting for the server
+	 * @return the reactive database, or null in case this backend only has the sync driver
+	 */
+	public default com.mongodb.reactivestreams.client.MongoDatabase getReactiveMongoDatabase() {
+		return null;
+	}
+
+	public default boolean isReactive() {
+		return getReactiveMongoDatabase() != null;
+	}
 }
@@ -9,20 +9,32 @@ import de.flapdoodle.embed.mongo.Command;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
-import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Defaults;
+import de.flapdoodle.embed.mongo.config.MongodConfig;
 import de.flapdoodle.embed.mongo.config.Net;
-import de.flapdoodle.embed.mongo.config.RuntimeConfigBuilder;
 import de.flapdoodle.embed.mongo.distribution.Version;
-import de.flapdoodle.embed.process.config.IRuntimeConfig;
-import de.flapdoodle.embed.process.config.io.ProcessOutput;
+import de.flapdoodle.embed.process.config.RuntimeConfig;
+import de.flapdoodle.embed.process.config.process.ProcessOutput;
 import de.flapdoodle.embed.process.runtime.Network;
 
 import java.io.IOException;
 
+/**
+ * Mongo backend of the tests, on an embedded mongod. With mongo.driver = reactive the reactive streams driver
+ * is connected to it as well, so the tests can run the services the same way as on the ReactiveMongoDB.
+ */
 public final class InMemoryMongoDB extends MongoDriver {
+	/**
+	 * The oldest server the application supports, the update pipelines of the moves and share jobs need 4.2
+	 */
+	private static final Version.Main VERSION = Version.Main.V4_4;
+
 	private static MongodExecutable mongoEx;
 	private static MongodProcess mongoProcess;
 
+	private com.mongodb.reactivestreams.client.MongoClient reactiveClient;
+	private volatile com.mongodb.reactivestreams.client.MongoDatabase reactiveDatabase;
+
 	@Inject
 	public InMemoryMongoDB(CoordinatedShutdown coordinatedShutdown, Config config) {
 		super(coordinatedShutdown, config);
@@ -33,13 +45,12 @@ public final class InMemoryMongoDB extends MongoDriver {
 			return;
 		}
 		try {
-			IRuntimeConfig builder = new RuntimeConfigBuilder()
-					.defaults(Command.MongoD)
-					.processOutput(ProcessOutput.getDefaultInstanceSilent())
+			RuntimeConfig builder = Defaults.runtimeConfigFor(Command.MongoD)
+					.processOutput(ProcessOutput.silent())
 					.build();
 			MongodStarter starter = MongodStarter.getInstance(builder);
-			mongoEx = starter.prepare(new MongodConfigBuilder()
-					.version(Version.Main.PRODUCTION)
+			mongoEx = starter.prepare(MongodConfig.builder()
+					.version(VERSION)
 					.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
 					.build());
 		} catch (IOException e) {
@@ -66,9 +77,29 @@ public final class InMemoryMongoDB extends MongoDriver {
 		return client.getDatabase("test");
 	}
 
+	@Override
+	public com.mongodb.reactivestreams.client.MongoDatabase getReactiveMongoDatabase() {
+		if (!config.getString("mongo.driver").equalsIgnoreCase("reactive")) {
+			return null;
+		}
+		com.mongodb.reactivestreams.client.MongoDatabase connected = reactiveDatabase;
+		if (connected != null) {
+			return connected;
+		}
+		synchronized (this) {
+			if (reactiveDatabase == null) {
+				this.startMongoProcess();
+				reactiveClient = com.mongodb.reactivestreams.client.MongoClients.create("mongodb://localhost:12345");
+				reactiveDatabase = reactiveClient.getDatabase("test").withCodecRegistry(CODEC_REGISTRY);
+			}
+			return reactiveDatabase;
+		}
+	}
+
 	@Override
 	public void disconnect() {
 		this.stopMongoClient();
+		this.stopReactiveMongoClient();
 		this.stopMongoProcess();
 		this.stopMongoExecutable();
 	}
@@ -98,4 +129,13 @@ public final class InMemoryMongoDB extends MongoDriver {
 		}
 		client.close();
 	}
+
+	public synchronized void stopReactiveMongoClient() {
+		if (reactiveClient == null) {
+			return;
+		}
+		reactiveClient.close();
+		reactiveClient = null;
+		reactiveDatabase = null;
+	}
 }
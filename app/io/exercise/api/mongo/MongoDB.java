@@ -22,6 +22,17 @@ public final class MongoDB extends MongoDriver {
 
 	@Override
 	protected MongoDatabase connect() {
+		client = MongoClients.create(settings(config));
+
+		return client.getDatabase(config.getString("mongo.database"));
+	}
+
+	/**
+	 * Connection settings of the configured mongo servers, shared with the reactive backend
+	 * @param config application config
+	 * @return the client settings
+	 */
+	static MongoClientSettings settings(Config config) {
 		String host = config.getString("mongo.host");
 		String[] hosts = new String[0];
 		if(!Strings.isNullOrEmpty(host)) {
@@ -33,7 +44,6 @@ public final class MongoDB extends MongoDriver {
 		if(!Strings.isNullOrEmpty(port)) {
 			ports = port.split(",");
 		}
-		String userDB = config.getString("mongo.database");
 		String username = config.getString("mongo.user");
 		String password = config.getString("mongo.password");
 
@@ -53,10 +63,7 @@ public final class MongoDB extends MongoDriver {
 			);
 		}
 			
-		MongoClientSettings options = builder.build();
-		client =  MongoClients.create(options);
-
-		return client.getDatabase(userDB);
+		return builder.build();
 	}
 
 	@Override
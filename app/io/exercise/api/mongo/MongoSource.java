@@ -0,0 +1,42 @@
+package io.exercise.api.mongo;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.reactivestreams.Publisher;
+
+import java.util.Optional;
+
+/**
+ * Akka Streams sources reading straight from a mongo cursor, so that a response can be streamed
+ * one document at a time instead of being collected into a list first.
+ */
+public class MongoSource {
+
+    /**
+     * Stream the documents of a find or aggregation. The cursor is opened when the source is materialized,
+     * read on the blocking IO dispatcher one batch at a time, and closed when the stream completes,
+     * fails or is cancelled by the client.
+     * @param iterable find or aggregation to stream
+     * @param batchSize number of documents fetched from the server per round trip
+     * @return the source of documents
+     */
+    public static <T> Source<T, NotUsed> from(MongoIterable<T> iterable, int batchSize) {
+        return Source.unfoldResource(
+                () -> iterable.batchSize(batchSize).iterator(),
+                (MongoCursor<T> cursor) -> cursor.hasNext() ? Optional.of(cursor.next()) : Optional.empty(),
+                MongoCursor::close
+        );
+    }
+
+    /**
+     * Stream the documents of a find or aggregation of the reactive streams driver. Demand of the stream is passed
+     * on to the driver, which fetches the next batch once the previous one was written, without blocking a thread
+     * @param publisher find or aggregation to stream
+     * @return the source of documents
+     */
+    public static <T> Source<T, NotUsed> from(Publisher<T> publisher) {
+        return Source.fromPublisher(publisher);
+    }
+}
@@ -0,0 +1,110 @@
+package io.exercise.api.mongo;
+
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.mongodb.MongoException;
+import io.exercise.api.exceptions.RequestException;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import play.mvc.Http;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Turns the publishers of the reactive streams driver into futures services can compose,
+ * completed on the driver threads once the server answered, without a thread waiting in between.
+ * Errors complete the futures the same way the sync services throw them: a CompletionException
+ * with a RequestException, 500 for mongo errors.
+ */
+public class Publishers {
+
+    /**
+     * Collect all the documents of a publisher
+     * @param publisher supplier of the find or aggregation, errors building it fail the future as well
+     * @return future of the documents
+     */
+    public static <T> CompletableFuture<List<T>> toList(Supplier<? extends Publisher<T>> publisher) {
+        CompletableFuture<List<T>> future = new CompletableFuture<>();
+        List<T> documents = new ArrayList<>();
+        subscribe(publisher, future, documents::add, () -> future.complete(documents));
+        return future;
+    }
+
+    /**
+     * The first document of a publisher, the rest of the publisher is cancelled
+     * @param publisher supplier of the find or aggregation, errors building it fail the future as well
+     * @return future of the first document, null in case there is none
+     */
+    public static <T> CompletableFuture<T> first(Supplier<? extends Publisher<T>> publisher) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        subscribe(publisher, future, future::complete, () -> future.complete(null));
+        return future;
+    }
+
+    /**
+     * Stream the documents of a publisher, see {@link MongoSource#from(Publisher)}
+     * @param publisher supplier of the find or aggregation, errors building it fail the future as well
+     * @return future of the source of documents, reading from the database when it is run
+     */
+    public static <T> CompletableFuture<Source<T, NotUsed>> toSource(Supplier<? extends Publisher<T>> publisher) {
+        try {
+            return CompletableFuture.completedFuture(MongoSource.from(publisher.get()));
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(error(ex));
+        }
+    }
+
+    private static <T> void subscribe(Supplier<? extends Publisher<T>> publisher, CompletableFuture<?> future, Consumer<T> onNext, Runnable onComplete) {
+        Publisher<T> source;
+        try {
+            source = publisher.get();
+        } catch (Exception ex) {
+            future.completeExceptionally(error(ex));
+            return;
+        }
+        source.subscribe(new Subscriber<T>() {
+            private Subscription subscription;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T next) {
+                onNext.accept(next);
+                if (future.isDone()) {
+                    subscription.cancel();
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                future.completeExceptionally(error(error));
+            }
+
+            @Override
+            public void onComplete() {
+                onComplete.run();
+            }
+        });
+    }
+
+    private static CompletionException error(Throwable error) {
+        if (error instanceof CompletionException) {
+            return (CompletionException) error;
+        }
+        error.printStackTrace();
+        if (error instanceof MongoException) {
+            return new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + error));
+        }
+        return new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, error));
+    }
+}
@@ -0,0 +1,59 @@
+package io.exercise.api.mongo;
+
+import akka.actor.CoordinatedShutdown;
+import com.google.inject.Inject;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoDatabase;
+import com.typesafe.config.Config;
+
+/**
+ * Mongo backend on the reactive streams driver. Queries composed from its publishers do not hold a thread
+ * while waiting for the server, the driver serves all of them from a small, fixed number of threads.
+ * The sync driver is kept alongside it, on the same servers, for the code that has not moved over yet.
+ */
+public final class ReactiveMongoDB extends MongoDriver {
+	private com.mongodb.reactivestreams.client.MongoClient reactiveClient;
+	private volatile com.mongodb.reactivestreams.client.MongoDatabase reactiveDatabase;
+
+	@Inject
+	public ReactiveMongoDB(CoordinatedShutdown coordinatedShutdown, Config config) {
+		super(coordinatedShutdown, config);
+	}
+
+	@Override
+	protected MongoDatabase connect() {
+		client = MongoClients.create(MongoDB.settings(config));
+
+		return client.getDatabase(config.getString("mongo.database"));
+	}
+
+	@Override
+	public com.mongodb.reactivestreams.client.MongoDatabase getReactiveMongoDatabase() {
+		com.mongodb.reactivestreams.client.MongoDatabase connected = reactiveDatabase;
+		if (connected != null) {
+			return connected;
+		}
+		synchronized (this) {
+			if (reactiveDatabase == null) {
+				reactiveClient = com.mongodb.reactivestreams.client.MongoClients.create(MongoDB.settings(config));
+				reactiveDatabase = reactiveClient.getDatabase(config.getString("mongo.database"))
+						.withCodecRegistry(CODEC_REGISTRY);
+			}
+			return reactiveDatabase;
+		}
+	}
+
+	@Override
+	public void disconnect() {
+		if (client != null) {
+			client.close();
+		}
+		synchronized (this) {
+			if (reactiveClient != null) {
+				reactiveClient.close();
+				reactiveClient = null;
+				reactiveDatabase = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.BaseModel;
+import io.exercise.api.utils.ServiceUtils;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Base of the hand written codecs of the models. Writes and reads the fields of BaseModel,
+ * leaving the fields of the model itself to the subclasses, and generates the ids of new documents.
+ * Null fields are not written and unknown fields are skipped, the same as the pojo codecs did.
+ * Every write also stores the access field derived from the read and write lists, it is never decoded.
+ * The ids of users in the acls are stored as ObjectIds, the models and the json keep them as strings.
+ */
+public abstract class BaseModelCodec<T extends BaseModel> implements CollectibleCodec<T> {
+    private final Class<T> type;
+
+    protected BaseModelCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * @param reader positioned at the start of the document, must be left there
+     * @return a new, empty model to decode the document into
+     */
+    protected abstract T newInstance(BsonReader reader);
+
+    protected abstract void encodeFields(BsonWriter writer, T value, EncoderContext encoderContext);
+
+    /**
+     * Decode a field of the model
+     * @return false in case the field is not known, so that it is skipped
+     */
+    protected abstract boolean decodeField(String name, BsonReader reader, T value, DecoderContext decoderContext);
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        if (value.getId() != null) {
+            writer.writeObjectId("_id", value.getId());
+        }
+        writeAcl(writer, "readACL", value.getReadACL());
+        writeAcl(writer, "writeACL", value.getWriteACL());
+        writeAcl(writer, ServiceUtils.ACCESS_FIELD, ServiceUtils.getAccessFor(value.getReadACL(), value.getWriteACL()));
+        if (value.getUpdatedAt() != null) {
+            writer.writeInt64("updatedAt", value.getUpdatedAt());
+        }
+        encodeFields(writer, value, encoderContext);
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        T value = newInstance(reader);
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+            switch (name) {
+                case "_id":
+                    value.setId(reader.readObjectId());
+                    break;
+                case "readACL":
+                    value.setReadACL(readAcl(reader));
+                    break;
+                case "writeACL":
+                    value.setWriteACL(readAcl(reader));
+                    break;
+                case "updatedAt":
+                    value.setUpdatedAt(readLong(reader));
+                    break;
+                default:
+                    if (!decodeField(name, reader, value, decoderContext)) {
+                        reader.skipValue();
+                    }
+            }
+        }
+        reader.readEndDocument();
+        return value;
+    }
+
+    @Override
+    public Class<T> getEncoderClass() {
+        return type;
+    }
+
+    @Override
+    public T generateIdIfAbsentFromDocument(T document) {
+        if (!documentHasId(document)) {
+            document.setId(new ObjectId());
+        }
+        return document;
+    }
+
+    @Override
+    public boolean documentHasId(T document) {
+        return document.getId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(T document) {
+        if (!documentHasId(document)) {
+            throw new IllegalStateException("The document does not contain an _id");
+        }
+        return new BsonObjectId(document.getId());
+    }
+
+    protected static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    protected static void writeObjectId(BsonWriter writer, String name, ObjectId value) {
+        if (value != null) {
+            writer.writeObjectId(name, value);
+        }
+    }
+
+    protected static void writeStrings(BsonWriter writer, String name, List<String> values) {
+        if (values == null) {
+            return;
+        }
+        writer.writeStartArray(name);
+        for (String next : values) {
+            writer.writeString(next);
+        }
+        writer.writeEndArray();
+    }
+
+    /**
+     * Write an acl, the ids of users as ObjectIds, a third of the size of their hex strings in documents and indexes
+     */
+    protected static void writeAcl(BsonWriter writer, String name, List<String> values) {
+        if (values == null) {
+            return;
+        }
+        writer.writeStartArray(name);
+        for (String next : values) {
+            Object value = ServiceUtils.toAclValue(next);
+            if (value instanceof ObjectId) {
+                writer.writeObjectId((ObjectId) value);
+            } else {
+                writer.writeString(next);
+            }
+        }
+        writer.writeEndArray();
+    }
+
+    protected static void writeObjectIds(BsonWriter writer, String name, List<ObjectId> values) {
+        if (values == null) {
+            return;
+        }
+        writer.writeStartArray(name);
+        for (ObjectId next : values) {
+            writer.writeObjectId(next);
+        }
+        writer.writeEndArray();
+    }
+
+    protected static List<String> readStrings(BsonReader reader) {
+        List<String> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            values.add(reader.readString());
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    /**
+     * Read an acl, ids are read back as hex strings whether they were stored as ObjectIds or, before, as strings
+     */
+    protected static List<String> readAcl(BsonReader reader) {
+        List<String> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() == BsonType.OBJECT_ID) {
+                values.add(reader.readObjectId().toHexString());
+            } else {
+                values.add(reader.readString());
+            }
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    protected static List<ObjectId> readObjectIds(BsonReader reader) {
+        List<ObjectId> values = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            values.add(reader.readObjectId());
+        }
+        reader.readEndArray();
+        return values;
+    }
+
+    /**
+     * Read a number written as either an int32 or an int64, e.g. by the shell or by an update
+     */
+    protected static long readLong(BsonReader reader) {
+        switch (reader.getCurrentBsonType()) {
+            case INT32:
+                return reader.readInt32();
+            case DOUBLE:
+                return (long) reader.readDouble();
+            default:
+                return reader.readInt64();
+        }
+    }
+
+    protected static int readInt(BsonReader reader) {
+        return (int) readLong(reader);
+    }
+}
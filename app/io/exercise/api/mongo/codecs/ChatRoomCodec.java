@@ -0,0 +1,33 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.ChatRoom;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+public class ChatRoomCodec extends BaseModelCodec<ChatRoom> {
+
+    public ChatRoomCodec() {
+        super(ChatRoom.class);
+    }
+
+    @Override
+    protected ChatRoom newInstance(BsonReader reader) {
+        return new ChatRoom();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, ChatRoom value, EncoderContext encoderContext) {
+        writeString(writer, "name", value.getName());
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, ChatRoom value, DecoderContext decoderContext) {
+        if (name.equals("name")) {
+            value.setName(reader.readString());
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,168 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.CategoryValueData;
+import io.exercise.api.models.dashboard.*;
+import io.exercise.api.models.enums.DashboardContentType;
+import org.bson.BsonReader;
+import org.bson.BsonReaderMark;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Codec of all content types, stored in the same collection and told apart by their type field.
+ * Decoding peeks at the type first and then dispatches on it, so the type may be anywhere in the document.
+ */
+public class ContentCodec<T extends Content> extends BaseModelCodec<T> {
+
+    public ContentCodec(Class<T> type) {
+        super(type);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T newInstance(BsonReader reader) {
+        switch (peekType(reader)) {
+            case TEXT:
+                return (T) new TextContent();
+            case EMAIL:
+                return (T) new EmailContent();
+            case IMAGE:
+                return (T) new ImageContent();
+            case LINE:
+                return (T) new LineContent();
+            default:
+                return (T) new Content();
+        }
+    }
+
+    private static DashboardContentType peekType(BsonReader reader) {
+        BsonReaderMark mark = reader.getMark();
+        try {
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                if (reader.readName().equals("type") && reader.getCurrentBsonType() == BsonType.STRING) {
+                    return DashboardContentType.valueOf(reader.readString());
+                }
+                reader.skipValue();
+            }
+            return DashboardContentType.NONE;
+        } catch (IllegalArgumentException ex) {
+            return DashboardContentType.NONE;
+        } finally {
+            mark.reset();
+        }
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, T value, EncoderContext encoderContext) {
+        writer.writeString("type", value.getType().name());
+        writeObjectId(writer, "dashboardId", value.getDashboardId());
+        switch (value.getType()) {
+            case TEXT:
+                writeString(writer, "text", ((TextContent) value).getText());
+                break;
+            case EMAIL:
+                EmailContent email = (EmailContent) value;
+                writeString(writer, "text", email.getText());
+                writeString(writer, "subject", email.getSubject());
+                writeString(writer, "email", email.getEmail());
+                break;
+            case IMAGE:
+                writeString(writer, "url", ((ImageContent) value).getUrl());
+                break;
+            case LINE:
+                List<CategoryValueData> data = ((LineContent) value).getData();
+                if (data != null) {
+                    writer.writeStartArray("data");
+                    for (CategoryValueData next : data) {
+                        writer.writeStartDocument();
+                        writeString(writer, "category", next.getCategory());
+                        writer.writeInt32("value", next.getValue());
+                        writer.writeEndDocument();
+                    }
+                    writer.writeEndArray();
+                }
+                break;
+            default:
+        }
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, T value, DecoderContext decoderContext) {
+        switch (name) {
+            case "type":
+                // already dispatched on, the type of the content is fixed by its class
+                reader.skipValue();
+                return true;
+            case "dashboardId":
+                value.setDashboardId(reader.readObjectId());
+                return true;
+            default:
+        }
+        switch (value.getType()) {
+            case TEXT:
+                if (name.equals("text")) {
+                    ((TextContent) value).setText(reader.readString());
+                    return true;
+                }
+                return false;
+            case EMAIL:
+                EmailContent email = (EmailContent) value;
+                switch (name) {
+                    case "text":
+                        email.setText(reader.readString());
+                        return true;
+                    case "subject":
+                        email.setSubject(reader.readString());
+                        return true;
+                    case "email":
+                        email.setEmail(reader.readString());
+                        return true;
+                    default:
+                        return false;
+                }
+            case IMAGE:
+                if (name.equals("url")) {
+                    ((ImageContent) value).setUrl(reader.readString());
+                    return true;
+                }
+                return false;
+            case LINE:
+                if (name.equals("data")) {
+                    ((LineContent) value).setData(readData(reader));
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private static List<CategoryValueData> readData(BsonReader reader) {
+        List<CategoryValueData> data = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            CategoryValueData next = new CategoryValueData();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                if (name.equals("category") && reader.getCurrentBsonType() == BsonType.STRING) {
+                    next.setCategory(reader.readString());
+                } else if (name.equals("value") && reader.getCurrentBsonType() != BsonType.NULL) {
+                    next.setValue(readInt(reader));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.readEndDocument();
+            data.add(next);
+        }
+        reader.readEndArray();
+        return data;
+    }
+}
@@ -0,0 +1,68 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.dashboard.Dashboard;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Children and items are never stored, they are attached when reading. Children are decoded though,
+ * since aggregations such as $graphLookup return the descendants of a dashboard in that field.
+ */
+public class DashboardCodec extends BaseModelCodec<Dashboard> {
+
+    public DashboardCodec() {
+        super(Dashboard.class);
+    }
+
+    @Override
+    protected Dashboard newInstance(BsonReader reader) {
+        return new Dashboard();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, Dashboard value, EncoderContext encoderContext) {
+        writeString(writer, "name", value.getName());
+        writeString(writer, "description", value.getDescription());
+        writeObjectId(writer, "parentId", value.getParentId());
+        writeObjectIds(writer, "ancestors", value.getAncestors());
+        writer.writeInt32("depth", value.getDepth());
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, Dashboard value, DecoderContext decoderContext) {
+        switch (name) {
+            case "name":
+                value.setName(reader.readString());
+                return true;
+            case "description":
+                value.setDescription(reader.readString());
+                return true;
+            case "parentId":
+                value.setParentId(reader.readObjectId());
+                return true;
+            case "ancestors":
+                value.setAncestors(readObjectIds(reader));
+                return true;
+            case "depth":
+                value.setDepth(readInt(reader));
+                return true;
+            case "children":
+                List<Dashboard> children = new ArrayList<>();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    children.add(decode(reader, decoderContext));
+                }
+                reader.readEndArray();
+                value.setChildren(children);
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.ChatRoom;
+import io.exercise.api.models.Role;
+import io.exercise.api.models.User;
+import io.exercise.api.models.dashboard.Content;
+import io.exercise.api.models.dashboard.Dashboard;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Provides the hand written codecs of the stored models, any content type is handled by the content codec.
+ */
+public class ModelCodecProvider implements CodecProvider {
+    private final UserCodec userCodec = new UserCodec();
+    private final DashboardCodec dashboardCodec = new DashboardCodec();
+    private final ChatRoomCodec chatRoomCodec = new ChatRoomCodec();
+    private final RoleCodec roleCodec = new RoleCodec();
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (clazz == User.class) {
+            return (Codec<T>) userCodec;
+        }
+        if (clazz == Dashboard.class) {
+            return (Codec<T>) dashboardCodec;
+        }
+        if (clazz == ChatRoom.class) {
+            return (Codec<T>) chatRoomCodec;
+        }
+        if (clazz == Role.class) {
+            return (Codec<T>) roleCodec;
+        }
+        if (Content.class.isAssignableFrom(clazz)) {
+            return new ContentCodec(clazz);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.Role;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+public class RoleCodec extends BaseModelCodec<Role> {
+
+    public RoleCodec() {
+        super(Role.class);
+    }
+
+    @Override
+    protected Role newInstance(BsonReader reader) {
+        return new Role();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, Role value, EncoderContext encoderContext) {
+        writeString(writer, "name", value.getName());
+        writeStrings(writer, "inherits", value.getInherits());
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, Role value, DecoderContext decoderContext) {
+        switch (name) {
+            case "name":
+                value.setName(reader.readString());
+                return true;
+            case "inherits":
+                value.setInherits(readStrings(reader));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
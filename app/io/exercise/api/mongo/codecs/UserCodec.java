@@ -0,0 +1,43 @@
+package io.exercise.api.mongo.codecs;
+
+import io.exercise.api.models.User;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+public class UserCodec extends BaseModelCodec<User> {
+
+    public UserCodec() {
+        super(User.class);
+    }
+
+    @Override
+    protected User newInstance(BsonReader reader) {
+        return new User();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, User value, EncoderContext encoderContext) {
+        writeString(writer, "username", value.getUsername());
+        writeString(writer, "password", value.getPassword());
+        writeStrings(writer, "roles", value.getRoles());
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, User value, DecoderContext decoderContext) {
+        switch (name) {
+            case "username":
+                value.setUsername(reader.readString());
+                return true;
+            case "password":
+                value.setPassword(reader.readString());
+                return true;
+            case "roles":
+                value.setRoles(readStrings(reader));
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.*;
+import io.exercise.api.utils.ServiceUtils;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backfills the access field, the union of the read and write lists, of the documents saved before the codecs
+ * maintained it, and indexes it. The read filters switch from the $or over the read and write lists, which no
+ * single index can serve, to one $in on the access field once it has completed.
+ * Documents saved in the meantime already carry the field and are left alone.
+ */
+public class AccessFieldMigration implements Migration {
+    public static final List<String> COLLECTIONS = List.of("users", "dashboards", "dashboardsContent");
+
+    @Override
+    public String getName() {
+        return "acl-access-field";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        for (String name : COLLECTIONS) {
+            MongoCollection<Document> collection = database.getCollection(name);
+            collection.createIndex(Indexes.ascending(ServiceUtils.ACCESS_FIELD));
+            backfill(collection, batchSize);
+        }
+    }
+
+    @Override
+    public void onCompleted(MigrationState migrationState) {
+        migrationState.setAccessFieldReady(true);
+    }
+
+    private void backfill(MongoCollection<Document> collection, int batchSize) {
+        ObjectId last = null;
+        while (true) {
+            Bson filter = Filters.exists(ServiceUtils.ACCESS_FIELD, false);
+            if (last != null) {
+                filter = Filters.and(filter, Filters.gt("_id", last));
+            }
+            List<Document> chunk = collection.find(filter)
+                    .projection(Projections.include("readACL", "writeACL"))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (chunk.isEmpty()) {
+                return;
+            }
+            last = chunk.get(chunk.size() - 1).getObjectId("_id");
+
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (Document document : chunk) {
+                writes.add(new UpdateOneModel<>(
+                        Filters.and(Filters.eq("_id", document.getObjectId("_id")), Filters.exists(ServiceUtils.ACCESS_FIELD, false)),
+                        Updates.set(ServiceUtils.ACCESS_FIELD, ServiceUtils.getAccessFor(
+                                document.getList("readACL", String.class),
+                                document.getList("writeACL", String.class)))
+                ));
+            }
+            collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+        }
+    }
+}
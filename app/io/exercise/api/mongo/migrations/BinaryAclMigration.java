@@ -0,0 +1,85 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.*;
+import io.exercise.api.utils.ServiceUtils;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the ids of users in the acls and the access field, stored as hex strings before, as ObjectIds.
+ * Walks every document once in chunks of _id. A document is only rewritten in case its acls did not change
+ * since they were read, a document saved in the meantime is already stored in the binary form.
+ * Until it has completed the filters match both forms.
+ */
+public class BinaryAclMigration implements Migration {
+    private static final List<String> FIELDS = List.of("readACL", "writeACL", ServiceUtils.ACCESS_FIELD);
+
+    @Override
+    public String getName() {
+        return "binary-acl";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        for (String name : AccessFieldMigration.COLLECTIONS) {
+            convert(database.getCollection(name), batchSize);
+        }
+    }
+
+    @Override
+    public void onCompleted(MigrationState migrationState) {
+        migrationState.setBinaryAclReady(true);
+    }
+
+    private void convert(MongoCollection<Document> collection, int batchSize) {
+        ObjectId last = null;
+        while (true) {
+            Bson filter = last == null ? Filters.empty() : Filters.gt("_id", last);
+            List<Document> chunk = collection.find(filter)
+                    .projection(Projections.include(FIELDS))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (chunk.isEmpty()) {
+                return;
+            }
+            last = chunk.get(chunk.size() - 1).getObjectId("_id");
+
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (Document document : chunk) {
+                List<Bson> unchanged = new ArrayList<>();
+                List<Bson> updates = new ArrayList<>();
+                unchanged.add(Filters.eq("_id", document.getObjectId("_id")));
+                for (String field : FIELDS) {
+                    List<?> values = document.getList(field, Object.class);
+                    if (values == null) {
+                        continue;
+                    }
+                    List<Object> converted = new ArrayList<>(values.size());
+                    boolean changed = false;
+                    for (Object value : values) {
+                        Object next = value instanceof String ? ServiceUtils.toAclValue((String) value) : value;
+                        changed |= next != value;
+                        converted.add(next);
+                    }
+                    unchanged.add(Filters.eq(field, values));
+                    if (changed) {
+                        updates.add(Updates.set(field, converted));
+                    }
+                }
+                if (!updates.isEmpty()) {
+                    writes.add(new UpdateOneModel<>(Filters.and(unchanged), Updates.combine(updates)));
+                }
+            }
+            if (!writes.isEmpty()) {
+                collection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
+
+/**
+ * Index for paging through the contents of a dashboard in _id order, the keyset cursor of the content list.
+ */
+public class ContentDashboardCursorIndexMigration implements Migration {
+
+    @Override
+    public String getName() {
+        return "content-dashboard-cursor-index";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        database.getCollection("dashboardsContent").createIndex(Indexes.ascending("dashboardId", "_id"));
+    }
+}
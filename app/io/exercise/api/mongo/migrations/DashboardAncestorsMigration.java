@@ -0,0 +1,97 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.*;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Backfills the materialized path (ancestors and depth) of the dashboards saved before it existed.
+ * Every pass walks the dashboards without a path in chunks of _id and completes the ones whose parent
+ * already has a path, so it takes as many passes as the deepest tree is deep.
+ * Until it has completed the services take the trees and the paths from the dashboard index.
+ */
+public class DashboardAncestorsMigration implements Migration {
+
+    @Override
+    public String getName() {
+        return "dashboard-ancestors";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        MongoCollection<Document> collection = database.getCollection("dashboards");
+        collection.createIndex(Indexes.ascending("ancestors"));
+        collection.createIndex(Indexes.ascending("parentId"));
+
+        while (pass(collection, batchSize) > 0) {
+            // keep going until a pass makes no progress, what is left has a cycle in its parents
+        }
+    }
+
+    @Override
+    public void onCompleted(MigrationState migrationState) {
+        migrationState.setAncestorsReady(true);
+    }
+
+    private long pass(MongoCollection<Document> collection, int batchSize) {
+        long updated = 0;
+        ObjectId last = null;
+        while (true) {
+            Bson filter = Filters.exists("ancestors", false);
+            if (last != null) {
+                filter = Filters.and(filter, Filters.gt("_id", last));
+            }
+            List<Document> chunk = collection.find(filter)
+                    .projection(Projections.include("parentId"))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+            if (chunk.isEmpty()) {
+                return updated;
+            }
+            last = chunk.get(chunk.size() - 1).getObjectId("_id");
+
+            Set<ObjectId> parentIds = chunk.stream()
+                    .map(next -> next.getObjectId("parentId"))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            Map<ObjectId, Document> parents = new HashMap<>();
+            if (!parentIds.isEmpty()) {
+                collection.find(Filters.in("_id", parentIds))
+                        .projection(Projections.include("ancestors"))
+                        .forEach((Document parent) -> parents.put(parent.getObjectId("_id"), parent));
+            }
+
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            for (Document dashboard : chunk) {
+                ObjectId parentId = dashboard.getObjectId("parentId");
+                List<ObjectId> ancestors = new ArrayList<>();
+                if (parentId != null) {
+                    Document parent = parents.get(parentId);
+                    if (parent != null) {
+                        List<ObjectId> parentAncestors = parent.getList("ancestors", ObjectId.class);
+                        if (parentAncestors == null) {
+                            // the parent is completed in this or a later pass
+                            continue;
+                        }
+                        ancestors.addAll(parentAncestors);
+                    }
+                    ancestors.add(parentId);
+                }
+                writes.add(new UpdateOneModel<>(
+                        Filters.and(Filters.eq("_id", dashboard.getObjectId("_id")), Filters.exists("ancestors", false)),
+                        Updates.combine(Updates.set("ancestors", ancestors), Updates.set("depth", ancestors.size()))
+                ));
+            }
+            if (!writes.isEmpty()) {
+                updated += collection.bulkWrite(writes, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            }
+        }
+    }
+}
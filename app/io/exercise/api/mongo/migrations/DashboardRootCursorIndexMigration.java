@@ -0,0 +1,20 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
+
+/**
+ * Index for paging through the root dashboards in _id order, the keyset cursor of the hierarchy.
+ */
+public class DashboardRootCursorIndexMigration implements Migration {
+
+    @Override
+    public String getName() {
+        return "dashboard-root-cursor-index";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        database.getCollection("dashboards").createIndex(Indexes.ascending("parentId", "_id"));
+    }
+}
@@ -0,0 +1,28 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * A one-off data migration, run online in the background by the MigrationRunner.
+ * Migrations must be idempotent, since a node can stop half way through one.
+ */
+public interface Migration {
+    /**
+     * @return unique name of the migration, used to record that it has completed
+     */
+    public String getName();
+
+    /**
+     * Run the migration
+     * @param database to migrate
+     * @param batchSize number of documents to migrate per chunk
+     */
+    public void run(MongoDatabase database, int batchSize);
+
+    /**
+     * Called once the migration has completed, by this node or by an earlier start of any node
+     * @param migrationState to be told about it
+     */
+    public default void onCompleted(MigrationState migrationState) {
+    }
+}
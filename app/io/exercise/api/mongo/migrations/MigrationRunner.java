@@ -0,0 +1,77 @@
+package io.exercise.api.mongo.migrations;
+
+import akka.actor.ActorSystem;
+import com.google.inject.Inject;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOptions;
+import com.typesafe.config.Config;
+import io.exercise.api.mongo.IMongoDB;
+import org.bson.Document;
+import play.Logger;
+
+import javax.inject.Singleton;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the pending migrations in the background when the application starts,
+ * on the single threaded dispatcher, and records the completed ones in the migrations collection.
+ */
+@Singleton
+public class MigrationRunner {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new DashboardAncestorsMigration(),
+            new DashboardRootCursorIndexMigration(),
+            new ContentDashboardCursorIndexMigration(),
+            new AccessFieldMigration(),
+            new BinaryAclMigration(),
+            new ShareJobExpiryMigration(),
+            new RoleNameIndexMigration()
+    );
+
+    private final Logger.ALogger logger = Logger.of(this.getClass());
+
+    @Inject
+    public MigrationRunner(IMongoDB mongoDB, Config config, ActorSystem actorSystem, MigrationState migrationState) {
+        if (!config.getBoolean("migrations.enabled")) {
+            return;
+        }
+        int batchSize = config.hasPath("batch_size") ? config.getInt("batch_size") : DEFAULT_BATCH_SIZE;
+        CompletableFuture.runAsync(() -> run(mongoDB.getMongoDatabase(), batchSize, migrationState), actorSystem.dispatchers().lookup("single-threaded"))
+                .exceptionally(ex -> {
+                    logger.error("Migrations failed", ex);
+                    return null;
+                });
+    }
+
+    private void run(MongoDatabase database, int batchSize, MigrationState migrationState) {
+        MongoCollection<Document> completed = database.getCollection("migrations");
+        for (Migration migration : MIGRATIONS) {
+            try {
+                if (completed.find(Filters.eq("_id", migration.getName())).first() != null) {
+                    migration.onCompleted(migrationState);
+                    continue;
+                }
+                long start = System.currentTimeMillis();
+                logger.info("Running migration {}", migration.getName());
+                migration.run(database, batchSize);
+                completed.replaceOne(
+                        Filters.eq("_id", migration.getName()),
+                        new Document("_id", migration.getName()).append("completedAt", new Date()),
+                        new ReplaceOptions().upsert(true)
+                );
+                logger.info("Completed migration {} in {} ms", migration.getName(), System.currentTimeMillis() - start);
+                migration.onCompleted(migrationState);
+            } catch (Exception ex) {
+                // later migrations may depend on this one, they are retried on the next start
+                logger.error("Migration " + migration.getName() + " failed", ex);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.exercise.api.mongo.migrations;
+
+import javax.inject.Singleton;
+
+/**
+ * Which of the migrations the queries depend on have completed, set by the MigrationRunner.
+ * Until then the filters and the services fall back to the data as it was before the migrations.
+ */
+@Singleton
+public class MigrationState {
+    /**
+     * Whether every document has its access field, set once the access field migration has completed,
+     * until then the read filter matches on the read and write lists
+     */
+    private volatile boolean accessFieldReady = false;
+
+    /**
+     * Whether every acl entry naming a user is stored as an ObjectId, set once the binary acl migration has completed,
+     * until then the filters match the entries in both encodings
+     */
+    private volatile boolean binaryAclReady = false;
+
+    /**
+     * Whether every dashboard has its materialized path, set once the ancestors migration has completed,
+     * until then the trees and the paths are taken from the dashboard index
+     */
+    private volatile boolean ancestorsReady = false;
+
+    public boolean isAccessFieldReady() {
+        return accessFieldReady;
+    }
+
+    public void setAccessFieldReady(boolean ready) {
+        accessFieldReady = ready;
+    }
+
+    public boolean isBinaryAclReady() {
+        return binaryAclReady;
+    }
+
+    public void setBinaryAclReady(boolean ready) {
+        binaryAclReady = ready;
+    }
+
+    public boolean isAncestorsReady() {
+        return ancestorsReady;
+    }
+
+    public void setAncestorsReady(boolean ready) {
+        ancestorsReady = ready;
+    }
+}
@@ -0,0 +1,22 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import io.exercise.api.cache.RoleHierarchy;
+
+/**
+ * Unique index on the names of the roles, a name is the key of a role in the acls and the role hierarchy.
+ */
+public class RoleNameIndexMigration implements Migration {
+
+    @Override
+    public String getName() {
+        return "role-name-index";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        database.getCollection(RoleHierarchy.COLLECTION).createIndex(Indexes.ascending("name"), new IndexOptions().unique(true));
+    }
+}
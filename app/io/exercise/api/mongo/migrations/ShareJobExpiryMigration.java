@@ -0,0 +1,27 @@
+package io.exercise.api.mongo.migrations;
+
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import io.exercise.api.models.ShareJob;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires the progress of share jobs a week after they have completed or failed, running jobs are kept.
+ */
+public class ShareJobExpiryMigration implements Migration {
+
+    @Override
+    public String getName() {
+        return "share-job-expiry";
+    }
+
+    @Override
+    public void run(MongoDatabase database, int batchSize) {
+        database.getCollection(ShareJob.COLLECTION).createIndex(
+                Indexes.ascending("completedAt"),
+                new IndexOptions().expireAfter(7L, TimeUnit.DAYS)
+        );
+    }
+}
@@ -0,0 +1,144 @@
+package io.exercise.api.mongo.serializers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.exercise.api.utils.ServiceUtils;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.io.ByteBufferBsonInput;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transcodes raw BSON documents straight into JSON, reading them with a streaming BsonReader,
+ * without decoding them into models first. The output matches the JSON of the models:
+ * _id is written as a string id together with the createdAt and lastUpdate derived from it,
+ * object ids as hex strings, dates as epoch millis, and null fields and the access field are left out.
+ */
+public class RawBsonJsonWriter {
+
+    /**
+     * Write a top level document, a model
+     * @param document to write
+     * @param generator to write to
+     * @param embedded lists of documents to write as additional fields, e.g. the items of a dashboard,
+     * replacing the stored fields with the same name, a null list leaves the field out
+     * @throws IOException in case the json could not be written
+     */
+    public static void write(RawBsonDocument document, JsonGenerator generator, Map<String, List<RawBsonDocument>> embedded) throws IOException {
+        try (BsonBinaryReader reader = new BsonBinaryReader(new ByteBufferBsonInput(document.getByteBuffer()))) {
+            Long createdAt = null;
+            Long updatedAt = null;
+
+            generator.writeStartObject();
+            reader.readStartDocument();
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+                BsonType type = reader.getCurrentBsonType();
+                if (type == BsonType.NULL || type == BsonType.UNDEFINED || embedded.containsKey(name) || name.equals(ServiceUtils.ACCESS_FIELD)) {
+                    reader.skipValue();
+                    continue;
+                }
+                if (name.equals("_id") && type == BsonType.OBJECT_ID) {
+                    ObjectId id = reader.readObjectId();
+                    createdAt = id.getTimestamp() * 1000L;
+                    generator.writeStringField("id", id.toHexString());
+                    generator.writeNumberField("createdAt", createdAt);
+                    continue;
+                }
+                if (name.equals("updatedAt") && type == BsonType.INT64) {
+                    updatedAt = reader.readInt64();
+                    generator.writeNumberField(name, updatedAt);
+                    continue;
+                }
+                generator.writeFieldName(name);
+                writeValue(reader, generator);
+            }
+            reader.readEndDocument();
+
+            for (Map.Entry<String, List<RawBsonDocument>> next : embedded.entrySet()) {
+                if (next.getValue() == null) {
+                    continue;
+                }
+                generator.writeArrayFieldStart(next.getKey());
+                for (RawBsonDocument item : next.getValue()) {
+                    write(item, generator, Map.of());
+                }
+                generator.writeEndArray();
+            }
+
+            Long lastUpdate = updatedAt != null ? updatedAt : createdAt;
+            if (lastUpdate != null) {
+                generator.writeNumberField("lastUpdate", lastUpdate);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeValue(BsonReader reader, JsonGenerator generator) throws IOException {
+        switch (reader.getCurrentBsonType()) {
+            case DOCUMENT:
+                generator.writeStartObject();
+                reader.readStartDocument();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    generator.writeFieldName(reader.readName());
+                    writeValue(reader, generator);
+                }
+                reader.readEndDocument();
+                generator.writeEndObject();
+                break;
+            case ARRAY:
+                generator.writeStartArray();
+                reader.readStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    writeValue(reader, generator);
+                }
+                reader.readEndArray();
+                generator.writeEndArray();
+                break;
+            case OBJECT_ID:
+                generator.writeString(reader.readObjectId().toHexString());
+                break;
+            case STRING:
+                generator.writeString(reader.readString());
+                break;
+            case INT32:
+                generator.writeNumber(reader.readInt32());
+                break;
+            case INT64:
+                generator.writeNumber(reader.readInt64());
+                break;
+            case DOUBLE:
+                generator.writeNumber(reader.readDouble());
+                break;
+            case DECIMAL128:
+                generator.writeNumber(reader.readDecimal128().bigDecimalValue());
+                break;
+            case BOOLEAN:
+                generator.writeBoolean(reader.readBoolean());
+                break;
+            case DATE_TIME:
+                generator.writeNumber(reader.readDateTime());
+                break;
+            case BINARY:
+                generator.writeBinary(reader.readBinaryData().getData());
+                break;
+            case NULL:
+                reader.readNull();
+                generator.writeNull();
+                break;
+            case UNDEFINED:
+                reader.readUndefined();
+                generator.writeNull();
+                break;
+            default:
+                // Types the models never store (regex, javascript, timestamps...) are skipped
+                reader.skipValue();
+                generator.writeNull();
+        }
+    }
+}
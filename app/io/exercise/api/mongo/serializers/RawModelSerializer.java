@@ -0,0 +1,16 @@
+package io.exercise.api.mongo.serializers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import io.exercise.api.models.RawModel;
+
+import java.io.IOException;
+
+public class RawModelSerializer extends JsonSerializer<RawModel> {
+
+    @Override
+    public void serialize(RawModel value, JsonGenerator jgen, SerializerProvider provider) throws IOException {
+        RawBsonJsonWriter.write(value.getDocument(), jgen, value.getEmbedded());
+    }
+}
@@ -1,22 +1,20 @@
 package io.exercise.api.services;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTCreationException;
 import com.google.inject.Inject;
 import com.mongodb.MongoException;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
-import com.typesafe.config.Config;
+import com.mongodb.client.model.Updates;
+import io.exercise.api.cache.LoginThrottle;
+import io.exercise.api.cache.UserVersions;
 import io.exercise.api.exceptions.RequestException;
 import io.exercise.api.models.User;
 import io.exercise.api.models.requests.AuthUserRequest;
+import io.exercise.api.mongo.DatabaseExecutionContext;
 import io.exercise.api.mongo.IMongoDB;
-import io.exercise.api.utils.Hash;
 import play.libs.Json;
-import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.Http;
-import java.util.Date;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
@@ -27,26 +25,39 @@ import java.util.concurrent.CompletionException;
 public class AuthenticateService {
 
     @Inject
-    HttpExecutionContext ec;
+    DatabaseExecutionContext executionContext;
 
     @Inject
     IMongoDB mongoDB;
 
     @Inject
-    Config config;
+    TokenService tokenService;
 
-    public static final long ONE_DAY_IN_MILLIS = 1000L * 60 * 60 * 24;
+    @Inject
+    UserVersions userVersions;
+
+    @Inject
+    PasswordService passwordService;
+
+    @Inject
+    LoginThrottle loginThrottle;
 
     /**
      * Create a token for a user
      * @param userRequest the user to be authenticated with a token
+     * @param ip of the client, failed logins are throttled per account and per ip
      * @return the token as a String
      * @throws JWTCreationException in case of invalid singing configuration
-     * @throws CompletionException in case data is not found or an internal error occurred
+     * @throws CompletionException in case data is not found, too many logins failed or an internal error occurred
      * @see io.exercise.api.controllers.AuthenticateController
      */
-    public CompletableFuture<String> authenticate (AuthUserRequest userRequest) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<String> authenticate (AuthUserRequest userRequest, String ip) {
+        long retryAfter = loginThrottle.retryAfter(userRequest.getUsername(), ip);
+        if (retryAfter > 0) {
+            return CompletableFuture.failedFuture(new CompletionException(new RequestException(Http.Status.TOO_MANY_REQUESTS,
+                    Json.toJson("Too many failed logins, try again in " + (retryAfter + 999) / 1000 + " seconds!"))));
+        }
+        return executionContext.auth(() -> {
             try {
                 MongoCollection<User> collection = mongoDB.getMongoDatabase()
                         .getCollection("users", User.class);
@@ -56,25 +67,14 @@ public class AuthenticateService {
                         Filters.eq("email", userRequest.getUsername()))
                 ).first();
                 if (user == null) {
+                    loginThrottle.onFailure(userRequest.getUsername(), ip);
                     throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("User doesn't exist!")));
                 }
 
-                if (!Hash.checkPassword(userRequest.getPassword(), user.getPassword())) {
-                    throw new CompletionException(new RequestException(Http.Status.UNAUTHORIZED, Json.toJson("Bad Credentials!")));
-                }
-
-                String secret = config.getString("play.http.secret.key");
-                Algorithm algorithm = Algorithm.HMAC256(secret);
-                return JWT.create()
-                        .withIssuer(user.getId().toString())
-                        .withExpiresAt(new Date(System.currentTimeMillis() + ONE_DAY_IN_MILLIS))
-                        .sign(algorithm);
-            } catch (JWTCreationException ex) {
-                ex.printStackTrace();
-                throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid Singing configuration / Couldn't convert Claims.")));
+                return user;
             } catch (CompletionException ex) {
                 ex.printStackTrace();
-                throw new CompletionException(ex);
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -82,6 +82,52 @@ public class AuthenticateService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        }).thenCompose((user) -> passwordService.check(userRequest.getPassword(), user.getPassword())
+                .thenCompose((matches) -> {
+                    if (!matches) {
+                        loginThrottle.onFailure(userRequest.getUsername(), ip);
+                        throw new CompletionException(new RequestException(Http.Status.UNAUTHORIZED, Json.toJson("Bad Credentials!")));
+                    }
+                    loginThrottle.onSuccess(userRequest.getUsername());
+                    if (passwordService.needsRehash(user.getPassword())) {
+                        rehash(user, userRequest.getPassword());
+                    }
+                    return executionContext.auth(() -> sign(user));
+                }));
+    }
+
+    private String sign(User user) {
+        try {
+            if (userVersions.isEnabled()) {
+                return tokenService.sign(user, userVersions.load(user.getId().toString()));
+            }
+            return tokenService.sign(user);
+        } catch (JWTCreationException ex) {
+            ex.printStackTrace();
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid Singing configuration / Couldn't convert Claims.")));
+        } catch (MongoException ex) {
+            ex.printStackTrace();
+            throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+        }
+    }
+
+    /**
+     * Rehash the password of a user with the configured cost, in the background, once it logged in with it.
+     * The password is only replaced in case it was not changed in the meantime
+     * @param user that logged in
+     * @param password the clear password it logged in with
+     */
+    private void rehash(User user, String password) {
+        passwordService.hash(password)
+                .thenCompose((hashed) -> executionContext.write(() -> mongoDB.getMongoDatabase()
+                        .getCollection("users", User.class)
+                        .updateOne(
+                                Filters.and(Filters.eq("_id", user.getId()), Filters.eq("password", user.getPassword())),
+                                Updates.set("password", hashed)
+                        )))
+                .exceptionally((ex) -> {
+                    ex.printStackTrace();
+                    return null;
+                });
     }
 }
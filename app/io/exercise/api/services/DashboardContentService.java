@@ -1,25 +1,38 @@
 package io.exercise.api.services;
 
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.typesafe.config.Config;
 import io.exercise.api.exceptions.RequestException;
-import io.exercise.api.models.User;
+import io.exercise.api.models.Page;
+import io.exercise.api.models.Principal;
+import io.exercise.api.models.RawModel;
 import io.exercise.api.models.dashboard.Content;
 import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.mongo.DatabaseExecutionContext;
 import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.mongo.MongoSource;
+import io.exercise.api.mongo.Publishers;
 import io.exercise.api.utils.ServiceUtils;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import play.libs.Json;
-import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.Http;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
 
 /**
  *  DashboardContentService contains service methods for DashboardContentController.
@@ -28,32 +41,135 @@ import java.util.concurrent.CompletionException;
 public class DashboardContentService {
 
     @Inject
-    HttpExecutionContext ec;
+    DatabaseExecutionContext executionContext;
 
     @Inject
     IMongoDB mongoDB;
 
+    @Inject
+    Config config;
+
     /**
-     * Get a list of all the dashboard contents
-     * @param skip number of dashboard contents to skip per page
-     * @param limit number of dashboard contents to limit per page
-     * @param user used for authentication
-     * @return result containing all dashboard contents
-     * @throws CompletionException in case data is not found or an internal error occurred
+     * Get a page of the contents of a dashboard, in _id order
+     * @param skip number of dashboard contents to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of dashboard contents per page
+     * @param principal used for authentication
+     * @param id of the parent dashboard
+     * @return result containing the page of dashboard contents
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardContentController
+     */
+    public CompletableFuture<Page<Content>> all (int skip, String after, int limit, Principal principal, String id) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toList(() -> findPublisher(Content.class, skip, after, principal, id).limit(limit + 1))
+                    .thenApply(fetched -> Page.of(fetched, limit));
+        }
+        return executionContext.read(() -> {
+            try {
+                return Page.of(find(Content.class, skip, after, principal, id).limit(limit + 1).into(new ArrayList<>()), limit);
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Stream the contents of a dashboard in _id order straight from the mongo cursor, no next cursor is returned
+     * @param skip number of dashboard contents to skip
+     * @param after cursor of a previous page, empty to start from the first content
+     * @param limit number of dashboard contents to stream
+     * @param principal used for authentication
+     * @param id of the parent dashboard
+     * @return source of the dashboard contents, reading from the database when it is run
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardContentController
+     */
+    public CompletableFuture<Source<Content, NotUsed>> stream (int skip, String after, int limit, Principal principal, String id) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toSource(() -> findPublisher(Content.class, skip, after, principal, id).limit(limit).batchSize(config.getInt("batch_size")));
+        }
+        return executionContext.read(() -> {
+            try {
+                return MongoSource.from(find(Content.class, skip, after, principal, id).limit(limit), config.getInt("batch_size"));
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Get a page of the contents of a dashboard as raw BSON, passed through to json without decoding them
+     * @param skip number of dashboard contents to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of dashboard contents per page
+     * @param principal used for authentication
+     * @param id of the parent dashboard
+     * @return result containing the page of raw dashboard contents
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardContentController
+     */
+    public CompletableFuture<Page<RawModel>> allRaw (int skip, String after, int limit, Principal principal, String id) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toList(() -> findPublisher(RawBsonDocument.class, skip, after, principal, id).limit(limit + 1))
+                    .thenApply(fetched -> Page.of(fetched.stream().map(RawModel::new).collect(Collectors.toList()), limit, RawModel::getId));
+        }
+        return executionContext.read(() -> {
+            try {
+                return Page.of(find(RawBsonDocument.class, skip, after, principal, id)
+                        .limit(limit + 1)
+                        .map(RawModel::new)
+                        .into(new ArrayList<>()), limit, RawModel::getId);
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Stream the contents of a dashboard as raw BSON, passed through to json without decoding them
+     * @param skip number of dashboard contents to skip
+     * @param after cursor of a previous page, empty to start from the first content
+     * @param limit number of dashboard contents to stream
+     * @param principal used for authentication
+     * @param id of the parent dashboard
+     * @return source of the raw dashboard contents, reading from the database when it is run
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
      * @see io.exercise.api.controllers.DashboardContentController
      */
-    public CompletableFuture<List<Content>> all (int skip, int limit, User user, String id) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Source<RawModel, NotUsed>> streamRaw (int skip, String after, int limit, Principal principal, String id) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toSource(() -> findPublisher(RawBsonDocument.class, skip, after, principal, id).limit(limit).batchSize(config.getInt("batch_size")))
+                    .thenApply(source -> source.map(RawModel::new));
+        }
+        return executionContext.read(() -> {
             try {
-                return mongoDB.getMongoDatabase()
-                        .getCollection("dashboardsContent", Content.class)
-                        .find(Filters.and(
-                                Filters.eq("dashboardId", new ObjectId(id)),
-                                ServiceUtils.getReadAccessFilterFor(user.getAccessIds())
-                        ))
-                        .skip(skip)
-                        .limit(limit)
-                        .into(new ArrayList<>());
+                return MongoSource.from(find(RawBsonDocument.class, skip, after, principal, id).limit(limit), config.getInt("batch_size"))
+                        .map(RawModel::new);
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -61,21 +177,47 @@ public class DashboardContentService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
+    }
+
+    private <T> FindIterable<T> find (Class<T> type, int skip, String after, Principal principal, String id) {
+        return mongoDB.getMongoDatabase()
+                .getCollection("dashboardsContent", type)
+                .find(filterFor(after, principal, id))
+                .sort(Sorts.ascending("_id"))
+                .skip(skip);
+    }
+
+    private <T> FindPublisher<T> findPublisher (Class<T> type, int skip, String after, Principal principal, String id) {
+        return mongoDB.getReactiveMongoDatabase()
+                .getCollection("dashboardsContent", type)
+                .find(filterFor(after, principal, id))
+                .sort(Sorts.ascending("_id"))
+                .skip(skip);
+    }
+
+    private Bson filterFor (String after, Principal principal, String id) {
+        checkId(id);
+        return Filters.and(
+                Filters.eq("dashboardId", new ObjectId(id)),
+                principal.getReadFilter(),
+                ServiceUtils.getAfterFilterFor(after)
+        );
     }
 
     /**
      * Save a dashboard content into the database
-     * @param user used for authentication
+     * @param principal used for authentication
      * @param content to be saved
      * @param id of the parent dashboard
      * @return the saved dashboard content
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardContentController
      */
-    public CompletableFuture<Content> save(User user, Content content, String id) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Content> save(Principal principal, Content content, String id) {
+        return executionContext.write(() -> {
             try {
+                checkId(id);
                 Dashboard dashboard = mongoDB.getMongoDatabase()
                         .getCollection("dashboards", Dashboard.class)
                         .find(Filters.eq("id", new ObjectId(id)))
@@ -88,11 +230,14 @@ public class DashboardContentService {
                         .getCollection("dashboardsContent", Content.class);
 
                 content.setDashboardId(new ObjectId(id));
-                content.getReadACL().add(user.getId().toString());
-                content.getWriteACL().add(user.getId().toString());
+                content.getReadACL().add(principal.getId());
+                content.getWriteACL().add(principal.getId());
                 collection.insertOne(content);
 
                 return content;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -100,21 +245,22 @@ public class DashboardContentService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
     }
 
     /**
      * Update a dashboard content in the database
-     * @param user used for authentication
+     * @param principal used for authentication
      * @param content to be updated
      * @param id of the parent dashboard
      * @return the updated dashboard content
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardContentController
      */
-    public CompletableFuture<Content> update(User user, Content content, String id) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Content> update(Principal principal, Content content, String id) {
+        return executionContext.write(() -> {
             try {
+                checkId(id);
                 Dashboard dashboard = mongoDB.getMongoDatabase()
                         .getCollection("dashboards", Dashboard.class)
                         .find(Filters.eq("id", new ObjectId(id)))
@@ -133,7 +279,7 @@ public class DashboardContentService {
                     throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
                 }
 
-                if (!user.hasReadWriteAccessFor(foundContent)) {
+                if (!principal.hasReadWriteAccessFor(foundContent)) {
                     throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
                 }
                 content.getReadACL().addAll(foundContent.getReadACL());
@@ -151,19 +297,19 @@ public class DashboardContentService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
     }
 
     /**
      * Delete a dashboard content from the database
-     * @param user used for authentication
+     * @param principal used for authentication
      * @param content to be deleted
      * @return the deleted dashboard content
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<Content> delete(User user, Content content) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Content> delete(Principal principal, Content content) {
+        return executionContext.write(() -> {
             try {
                 MongoCollection<Content> collection = mongoDB.getMongoDatabase()
                         .getCollection("dashboardsContent", Content.class);
@@ -174,7 +320,7 @@ public class DashboardContentService {
                     throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
                 }
 
-                if (!user.hasReadWriteAccessFor(foundContent)) {
+                if (!principal.hasReadWriteAccessFor(foundContent)) {
                     throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
                 }
                 collection.deleteOne(Filters.eq("_id", content.getId()));
@@ -190,6 +336,16 @@ public class DashboardContentService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
+    }
+
+    /**
+     * The id of the parent dashboard comes from the path, anything but an ObjectId matches no dashboard
+     * @param id of the parent dashboard
+     */
+    private static void checkId (String id) {
+        if (Strings.isNullOrEmpty(id) || !ObjectId.isValid(id)) {
+            throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Incorrect or missing id!")));
+        }
     }
 }
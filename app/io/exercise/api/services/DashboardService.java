@@ -1,23 +1,44 @@
 package io.exercise.api.services;
 
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Accumulators;
 import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.GraphLookupOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import com.typesafe.config.Config;
+import io.exercise.api.cache.DashboardIndex;
+import io.exercise.api.cache.VisibilityCache;
 import io.exercise.api.exceptions.RequestException;
 import io.exercise.api.models.BaseModel;
-import io.exercise.api.models.User;
+import io.exercise.api.models.Page;
+import io.exercise.api.models.Principal;
+import io.exercise.api.models.RawModel;
+import io.exercise.api.models.ShareJob;
 import io.exercise.api.models.dashboard.Content;
 import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.models.enums.ShareJobStatus;
+import io.exercise.api.models.requests.ShareDashboardRequest;
+import io.exercise.api.mongo.DatabaseExecutionContext;
 import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.mongo.MongoSource;
+import io.exercise.api.mongo.migrations.MigrationState;
+import io.exercise.api.utils.CursorUtils;
+import io.exercise.api.utils.HierarchyUtils;
 import io.exercise.api.utils.ServiceUtils;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import play.libs.Json;
-import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.Http;
 
 import java.util.*;
@@ -32,29 +53,49 @@ import java.util.stream.Collectors;
 public class DashboardService {
 
     @Inject
-    HttpExecutionContext ec;
+    DatabaseExecutionContext executionContext;
 
     @Inject
     IMongoDB mongoDB;
 
+    @Inject
+    DashboardIndex dashboardIndex;
+
+    @Inject
+    VisibilityCache visibilityCache;
+
+    @Inject
+    MigrationState migrationState;
+
+    @Inject
+    Config config;
+
     /**
-     * Get a list of all the dashboards together with their items
-     * @param skip number of dashboards to skip per page
-     * @param limit number of dashboards to limit per page
-     * @param user used for authentication
-     * @return result containing all dashboards
-     * @throws CompletionException in case data is not found or an internal error occurred
+     * Upper bound on the number of ids sent in a single $in query
+     */
+    private static final int IN_CHUNK_SIZE = 10000;
+
+    /**
+     * Get a page of the dashboards together with their items, in _id order
+     * @param skip number of dashboards to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of dashboards per page
+     * @param principal used for authentication
+     * @return result containing the page of dashboards
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<List<Dashboard>> all(int skip, int limit, User user) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Page<Dashboard>> all(int skip, String after, int limit, Principal principal) {
+        return executionContext.read(() -> {
                     try {
-                        return mongoDB.getMongoDatabase()
-                                .getCollection("dashboards", Dashboard.class)
-                                .find(ServiceUtils.getReadAccessFilterFor(user.getAccessIds()))
-                                .skip(skip)
-                                .limit(limit)
-                                .into(new ArrayList<>());
+                        List<Dashboard> cached = fromVisibilityCache(principal, after, skip, limit, false);
+                        if (cached != null) {
+                            return Page.of(cached, limit);
+                        }
+                        return Page.of(find(Dashboard.class, skip, after, principal).limit(limit + 1).into(new ArrayList<>()), limit);
+                    } catch (CompletionException ex) {
+                        ex.printStackTrace();
+                        throw ex;
                     } catch (MongoException ex) {
                         ex.printStackTrace();
                         throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -62,27 +103,42 @@ public class DashboardService {
                         ex.printStackTrace();
                         throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
                     }
-                }, ec.current()
-        ).thenApply(dashboards -> {
+                }
+        ).thenApply(page -> {
             try {
-                MongoCollection<Content> contentsCollection = mongoDB.getMongoDatabase()
-                        .getCollection("dashboardsContent", Content.class);
+                withItems(page.getData(), principal);
+                return page;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
 
-                Map<ObjectId, List<Content>> list = contentsCollection.find(
-                                Filters.and(
-                                        ServiceUtils.getReadAccessFilterFor(user.getAccessIds()),
-                                        Filters.in("dashboardId",
-                                                dashboards.stream()
-                                                        .map(BaseModel::getId)
-                                                        .collect(Collectors.toList()))
-                                )).into(new ArrayList<>())
-                        .stream()
-                        .collect(Collectors.groupingBy(Content::getDashboardId));
-
-                return dashboards
-                        .stream()
-                        .peek(x -> x.setItems(list.get(x.getId())))
-                        .collect(Collectors.toList());
+    /**
+     * Stream the dashboards together with their items, in _id order, straight from the mongo cursor.
+     * The items are looked up once per batch of dashboards, and no next cursor is returned
+     * @param skip number of dashboards to skip
+     * @param after cursor of a previous page, empty to start from the first dashboard
+     * @param limit number of dashboards to stream
+     * @param principal used for authentication
+     * @return source of the dashboards, reading from the database when it is run
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<Source<Dashboard, NotUsed>> stream(int skip, String after, int limit, Principal principal) {
+        return executionContext.read(() -> {
+            try {
+                int batchSize = config.getInt("batch_size");
+                return MongoSource.from(find(Dashboard.class, skip, after, principal).limit(limit), batchSize)
+                        .grouped(batchSize)
+                        .mapConcat(dashboards -> withItems(dashboards, principal));
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -94,52 +150,161 @@ public class DashboardService {
     }
 
     /**
-     * Get a list of all the dashboards in a hierarchial manner, together with their items
-     * @param skip number of dashboards to skip per page
-     * @param limit number of dashboards to limit per page
-     * @param user used for authentication
+     * Get a page of the dashboards together with their items as raw BSON, passed through to json without decoding them
+     * @param skip number of dashboards to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of dashboards per page
+     * @param principal used for authentication
+     * @return result containing the page of raw dashboards
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<Page<RawModel>> allRaw(int skip, String after, int limit, Principal principal) {
+        return executionContext.read(() -> {
+            try {
+                List<RawBsonDocument> fetched = find(RawBsonDocument.class, skip, after, principal)
+                        .limit(limit + 1)
+                        .into(new ArrayList<>());
+                Page<RawBsonDocument> page = Page.of(fetched, limit, next -> next.getObjectId("_id").getValue());
+                return new Page<>(withRawItems(page.getData(), principal), page.getNext());
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Stream the dashboards together with their items as raw BSON, passed through to json without decoding them
+     * @param skip number of dashboards to skip
+     * @param after cursor of a previous page, empty to start from the first dashboard
+     * @param limit number of dashboards to stream
+     * @param principal used for authentication
+     * @return source of the raw dashboards, reading from the database when it is run
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<Source<RawModel, NotUsed>> streamRaw(int skip, String after, int limit, Principal principal) {
+        return executionContext.read(() -> {
+            try {
+                int batchSize = config.getInt("batch_size");
+                return MongoSource.from(find(RawBsonDocument.class, skip, after, principal).limit(limit), batchSize)
+                        .grouped(batchSize)
+                        .mapConcat(dashboards -> withRawItems(dashboards, principal));
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    private <T> FindIterable<T> find(Class<T> type, int skip, String after, Principal principal) {
+        return mongoDB.getMongoDatabase()
+                .getCollection("dashboards", type)
+                .find(Filters.and(
+                        principal.getReadFilter(),
+                        ServiceUtils.getAfterFilterFor(after)
+                ))
+                .sort(Sorts.ascending("_id"))
+                .skip(skip);
+    }
+
+    /**
+     * Fetch a page of dashboards through the visibility cache: the ids are selected out of the bitmap of the principal
+     * and fetched with a single $in query, which still applies the read filter
+     * @param principal used for authentication
+     * @param after cursor of the previous page, empty for the first page
+     * @param skip number of dashboards to skip
+     * @param limit number of dashboards per page
+     * @param rootsOnly whether to only fetch dashboards without a parent
+     * @return at most limit + 1 dashboards in _id order, null in case the cache can not answer and the query has to run
+     */
+    private List<Dashboard> fromVisibilityCache(Principal principal, String after, int skip, int limit, boolean rootsOnly) {
+        if (!visibilityCache.isEnabled()) {
+            return null;
+        }
+        ObjectId from = Strings.isNullOrEmpty(after) ? null : CursorUtils.decode(after);
+        List<ObjectId> ids = visibilityCache.visible(principal, from, skip + limit + 1, rootsOnly);
+        if (ids == null) {
+            return null;
+        }
+        ids = ids.subList(Math.min(skip, ids.size()), ids.size());
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Dashboard> fetched = mongoDB.getMongoDatabase()
+                .getCollection("dashboards", Dashboard.class)
+                .find(Filters.and(Filters.in("_id", ids), principal.getReadFilter()))
+                .sort(Sorts.ascending("_id"))
+                .into(new ArrayList<>());
+        if (fetched.size() < ids.size()) {
+            // the bitmap is behind a change, it is reloaded by the next request
+            visibilityCache.invalidate(principal);
+            return null;
+        }
+        return fetched;
+    }
+
+    /**
+     * Set the visible content items of the given dashboards
+     * @param dashboards to set the items for
+     * @param principal used for authentication
+     * @return the dashboards
+     */
+    private List<Dashboard> withItems(List<Dashboard> dashboards, Principal principal) {
+        Map<ObjectId, List<Content>> list = items(dashboards, principal)
+                .stream()
+                .collect(Collectors.groupingBy(Content::getDashboardId));
+
+        dashboards.forEach(x -> x.setItems(list.get(x.getId())));
+        return dashboards;
+    }
+
+    /**
+     * Get a page of root dashboards in a hierarchial manner, together with their descendants and items.
+     * Pagination only applies to the roots and is keyset based, so every page costs the same
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of root dashboards per page
+     * @param depth number of levels below the roots to return, negative for the whole trees
+     * @param includeItems whether to return the items of the dashboards, or only their number
+     * @param principal used for authentication
      * @return result containing all dashboards in a hierarchical manner
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<List<Dashboard>> hierarchy(int skip, int limit, User user) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Page<Dashboard>> hierarchy(String after, int limit, int depth, boolean includeItems, Principal principal) {
+        return executionContext.read(() -> {
                     try {
-                        MongoCollection<Dashboard> dashboardsCollection = mongoDB.getMongoDatabase()
-                                .getCollection("dashboards", Dashboard.class);
-
-                        List<Bson> pipeline = new ArrayList<>();
-
-                        pipeline.add(Aggregates.match(
-                                ServiceUtils.getReadAccessFilterFor(user.getAccessIds())
-                        ));
-                        pipeline.add(Aggregates.skip(skip));
-                        pipeline.add(Aggregates.limit(limit));
-
-                        // Adding the content items to dashboards using mongo aggregation
-//                        pipeline.add(Aggregates.lookup(
-//                                "dashboardsContent",
-//                                "_id",
-//                                "dashboardId",
-//                                "items"
-//                        ));
-
-                        // Adding the content items to dashboards using mongo aggregation
-                        pipeline.add(Aggregates.match(
-                                Filters.eq("parentId", null)
-                        ));
-
-                        pipeline.add(Aggregates.graphLookup(
-                                "dashboards",
-                                "$_id",
-                                "_id",
-                                "parentId",
-                                "children"
-                        ));
-
-                        return dashboardsCollection
-                                .aggregate(pipeline, Dashboard.class)
+                        List<Dashboard> cached = fromVisibilityCache(principal, after, 0, limit, true);
+                        if (cached != null) {
+                            return Page.of(cached, limit);
+                        }
+                        List<Dashboard> fetched = mongoDB.getMongoDatabase()
+                                .getCollection("dashboards", Dashboard.class)
+                                .find(Filters.and(
+                                        principal.getReadFilter(),
+                                        Filters.eq("parentId", null),
+                                        ServiceUtils.getAfterFilterFor(after)
+                                ))
+                                .sort(Sorts.ascending("_id"))
+                                .limit(limit + 1)
                                 .into(new ArrayList<>());
+                        return Page.of(fetched, limit);
+                    } catch (CompletionException ex) {
+                        ex.printStackTrace();
+                        throw ex;
                     } catch (MongoException ex) {
                         ex.printStackTrace();
                         throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -147,35 +312,74 @@ public class DashboardService {
                         ex.printStackTrace();
                         throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
                     }
-                }, ec.current()
-        ).thenApply(dashboards -> {
+                }
+        ).thenApply(page -> {
             try {
-                // Adding the content items to dashboards using java
-                List<Dashboard> dashboardFlat = dashboards.stream()
-                        .map(Dashboard::getChildren)
-                        .flatMap(Collection::stream)
-                        .collect(Collectors.toList());
-                dashboardFlat.addAll(dashboards);
+                List<Dashboard> roots = page.getData();
 
-                MongoCollection<Content> contentsCollection = mongoDB.getMongoDatabase()
-                        .getCollection("dashboardsContent", Content.class);
+                // Fetching the visible descendants of all roots with a single query on the materialized path,
+                // roots are at depth 0 so the depth limit is also a limit on the depth of the descendants
+                List<Dashboard> descendants = new ArrayList<>();
+                if (!roots.isEmpty() && depth != 0 && !migrationState.isAncestorsReady()) {
+                    // the paths are still being backfilled, the trees are taken from the dashboard index instead
+                    Map<ObjectId, Integer> depths = descendantsFromIndex(ids(roots), depth);
+                    MongoCollection<Dashboard> collection = mongoDB.getMongoDatabase().getCollection("dashboards", Dashboard.class);
+                    for (List<ObjectId> chunk : Lists.partition(new ArrayList<>(depths.keySet()), IN_CHUNK_SIZE)) {
+                        collection.find(Filters.and(Filters.in("_id", chunk), principal.getReadFilter()))
+                                .into(descendants);
+                    }
+                    descendants.forEach(next -> next.setDepth(depths.get(next.getId())));
+                } else if (!roots.isEmpty() && depth != 0) {
+                    Bson filter = Filters.and(
+                            Filters.in("ancestors", roots.stream()
+                                    .map(BaseModel::getId)
+                                    .collect(Collectors.toList())),
+                            principal.getReadFilter()
+                    );
+                    if (depth > 0) {
+                        filter = Filters.and(filter, Filters.lte("depth", depth));
+                    }
+                    mongoDB.getMongoDatabase()
+                            .getCollection("dashboards", Dashboard.class)
+                            .find(filter)
+                            .into(descendants);
+                }
 
-                Map<ObjectId, List<Content>> list = contentsCollection.find(
-                                Filters.and(
-                                        ServiceUtils.getReadAccessFilterFor(user.getAccessIds()),
-                                        Filters.in("dashboardId",
-                                                dashboardFlat.stream()
-                                                        .map(BaseModel::getId)
-                                                        .collect(Collectors.toList()))
-                                )).into(new ArrayList<>())
-                        .stream()
-                        .collect(Collectors.groupingBy(Content::getDashboardId));
-
-                dashboardFlat.forEach(next -> {
-                    next.setItems(list.get(next.getId()));
-                });
+                List<Dashboard> dashboardFlat = new ArrayList<>(descendants);
+                dashboardFlat.addAll(roots);
+
+                if (includeItems) {
+                    // Adding the content items to dashboards using java
+                    Map<ObjectId, List<Content>> list = items(dashboardFlat, principal)
+                            .stream()
+                            .collect(Collectors.groupingBy(Content::getDashboardId));
+
+                    dashboardFlat.forEach(next -> {
+                        next.setItems(list.get(next.getId()));
+                    });
+                } else {
+                    Map<ObjectId, Integer> itemCounts = countBy("dashboardsContent", "dashboardId", ids(dashboardFlat), principal);
+                    dashboardFlat.forEach(next -> {
+                        next.setItems(null);
+                        next.setItemCount(itemCounts.getOrDefault(next.getId(), 0));
+                    });
+                }
 
-                return dashboards;
+                // Building the dashboards hierarchy
+                HierarchyUtils.build(roots, HierarchyUtils.groupByParent(descendants));
+
+                if (depth >= 0) {
+                    // The children of the deepest level are not returned, so that the trees can be expanded lazily
+                    List<Dashboard> frontier = dashboardFlat.stream()
+                            .filter(next -> next.getDepth() >= depth)
+                            .collect(Collectors.toList());
+                    Map<ObjectId, Integer> childCounts = countBy("dashboards", "parentId", ids(frontier), principal);
+                    frontier.forEach(next -> {
+                        next.setChildren(null);
+                        next.setChildCount(childCounts.getOrDefault(next.getId(), 0));
+                    });
+                }
+                return page;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -183,22 +387,83 @@ public class DashboardService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
+        });
+    }
+
+    /**
+     * Walk the dashboard index level by level from the roots
+     * @param roots ids of the root dashboards
+     * @param depth number of levels below the roots, negative for the whole trees
+     * @return the depth of every descendant, by id
+     */
+    private Map<ObjectId, Integer> descendantsFromIndex(List<ObjectId> roots, int depth) {
+        Map<ObjectId, Integer> depths = new LinkedHashMap<>();
+        List<ObjectId> level = roots;
+        for (int next = 1; !level.isEmpty() && (depth < 0 || next <= depth); next++) {
+            List<ObjectId> children = new ArrayList<>();
+            for (ObjectId id : level) {
+                for (ObjectId child : dashboardIndex.children(id)) {
+                    if (depths.putIfAbsent(child, next) == null) {
+                        children.add(child);
+                    }
+                }
+            }
+            level = children;
         }
-        ).thenApply(dashboards -> {
+        return depths;
+    }
+
+    /**
+     * Get one level of the hierarchy, the direct children of a dashboard, together with the number
+     * of their own children and items so that they can be expanded lazily
+     * @param skip number of dashboards to skip per page
+     * @param limit number of dashboards to limit per page
+     * @param principal used for authentication
+     * @param id of the parent dashboard
+     * @return result containing the children of the dashboard
+     * @throws CompletionException in case data is not found or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<List<Dashboard>> children(int skip, int limit, Principal principal, String id) {
+        return executionContext.read(() -> {
             try {
-                // Building the dashboards hierarchy
-                return dashboards
-                        .stream()
-                        .map(dashboard -> {
-                            try {
-                                Dashboard parent = dashboard.clone();
-                                parent.setChildren(new ArrayList<>());
-                                recursiveHierarchy(dashboard.getChildren(), parent);
-                                return parent;
-                            } catch (CloneNotSupportedException e) {
-                                throw new RuntimeException(e);
-                            }
-                        }).collect(Collectors.toList());
+                MongoCollection<Dashboard> collection = mongoDB.getMongoDatabase()
+                        .getCollection("dashboards", Dashboard.class);
+
+                if (Strings.isNullOrEmpty(id) || !ObjectId.isValid(id)) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Incorrect or missing id!")));
+                }
+
+                Dashboard parent = collection.find(Filters.and(
+                        Filters.eq("_id", new ObjectId(id)),
+                        principal.getReadFilter()
+                )).first();
+                if (parent == null) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
+                }
+
+                List<Dashboard> children = collection.find(Filters.and(
+                                Filters.eq("parentId", parent.getId()),
+                                principal.getReadFilter()
+                        ))
+                        .sort(Sorts.ascending("_id"))
+                        .skip(skip)
+                        .limit(limit)
+                        .into(new ArrayList<>());
+
+                List<ObjectId> childrenIds = ids(children);
+                Map<ObjectId, Integer> childCounts = countBy("dashboards", "parentId", childrenIds, principal);
+                Map<ObjectId, Integer> itemCounts = countBy("dashboardsContent", "dashboardId", childrenIds, principal);
+                children.forEach(next -> {
+                    next.setChildren(null);
+                    next.setItems(null);
+                    next.setChildCount(childCounts.getOrDefault(next.getId(), 0));
+                    next.setItemCount(itemCounts.getOrDefault(next.getId(), 0));
+                });
+                return children;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -209,22 +474,115 @@ public class DashboardService {
         });
     }
 
-    public CompletableFuture<List<Dashboard>> hierarchy2(int skip, int limit, User user) {
-        return CompletableFuture.supplyAsync(() -> {
+    /**
+     * Attach the visible content items to raw dashboards, read as raw BSON as well.
+     * Matches the json of the dashboard model, which always has children and only has items if there are any,
+     * replacing the children and items stored with the dashboard
+     * @param dashboards to attach the items to
+     * @param principal used for authentication
+     * @return the raw dashboards with their items
+     */
+    private List<RawModel> withRawItems(List<RawBsonDocument> dashboards, Principal principal) {
+        MongoCollection<RawBsonDocument> contentsCollection = mongoDB.getMongoDatabase()
+                .getCollection("dashboardsContent", RawBsonDocument.class);
+
+        List<ObjectId> dashboardsIds = dashboards.stream()
+                .map(next -> next.getObjectId("_id").getValue())
+                .collect(Collectors.toList());
+        Map<ObjectId, List<RawBsonDocument>> list = new HashMap<>();
+        for (List<ObjectId> chunk : Lists.partition(dashboardsIds, IN_CHUNK_SIZE)) {
+            contentsCollection.find(Filters.and(
+                    principal.getReadFilter(),
+                    Filters.in("dashboardId", chunk)
+            )).forEach((RawBsonDocument next) -> list
+                    .computeIfAbsent(next.getObjectId("dashboardId").getValue(), k -> new ArrayList<>())
+                    .add(next));
+        }
+
+        List<RawModel> result = new ArrayList<>(dashboards.size());
+        for (RawBsonDocument dashboard : dashboards) {
+            Map<String, List<RawBsonDocument>> embedded = new LinkedHashMap<>();
+            embedded.put("children", List.of());
+            embedded.put("items", list.get(dashboard.getObjectId("_id").getValue()));
+            result.add(new RawModel(dashboard, embedded));
+        }
+        return result;
+    }
+
+    /**
+     * Get the visible content items of the given dashboards, in chunks of ids
+     * @param dashboards to get the items for
+     * @param principal used for authentication
+     * @return the items of all dashboards
+     */
+    private List<Content> items(List<Dashboard> dashboards, Principal principal) {
+        MongoCollection<Content> contentsCollection = mongoDB.getMongoDatabase()
+                .getCollection("dashboardsContent", Content.class);
+
+        List<Content> contents = new ArrayList<>();
+        for (List<ObjectId> chunk : Lists.partition(ids(dashboards), IN_CHUNK_SIZE)) {
+            contentsCollection.find(Filters.and(
+                    principal.getReadFilter(),
+                    Filters.in("dashboardId", chunk)
+            )).into(contents);
+        }
+        return contents;
+    }
+
+    /**
+     * Count the visible documents of a collection grouped by a reference field, without fetching them
+     * @param collectionName of the documents to count
+     * @param field referencing the dashboard, e.g. parentId or dashboardId
+     * @param ids of the dashboards to count for
+     * @param principal used for authentication
+     * @return map of dashboard id to the number of documents referencing it, dashboards with none are left out
+     */
+    private Map<ObjectId, Integer> countBy(String collectionName, String field, List<ObjectId> ids, Principal principal) {
+        MongoCollection<Document> collection = mongoDB.getMongoDatabase().getCollection(collectionName);
+
+        Map<ObjectId, Integer> counts = new HashMap<>();
+        for (List<ObjectId> chunk : Lists.partition(ids, IN_CHUNK_SIZE)) {
+            collection.aggregate(List.of(
+                    Aggregates.match(Filters.and(
+                            Filters.in(field, chunk),
+                            principal.getReadFilter()
+                    )),
+                    Aggregates.group("$" + field, Accumulators.sum("count", 1))
+            )).forEach((Document next) -> counts.put(next.getObjectId("_id"), next.getInteger("count")));
+        }
+        return counts;
+    }
+
+    private static List<ObjectId> ids(List<Dashboard> dashboards) {
+        return dashboards.stream()
+                .map(BaseModel::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get a page of root dashboards in a hierarchial manner, looking up the descendants with $graphLookup
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of root dashboards per page
+     * @param principal used for authentication
+     * @return result containing the root dashboards in a hierarchical manner
+     * @throws CompletionException in case the cursor is not valid or an internal error occurred
+     */
+    public CompletableFuture<Page<Dashboard>> hierarchy2(String after, int limit, Principal principal) {
+        return executionContext.read(() -> {
             try {
                 MongoCollection<Dashboard> dashboardsCollection = mongoDB.getMongoDatabase()
                         .getCollection("dashboardsSmall", Dashboard.class);
 
                 List<Bson> pipeline = new ArrayList<>();
 
-                pipeline.add(Aggregates.match(
-                        ServiceUtils.getReadAccessFilterFor(user.getAccessIds())
-                ));
-
-                pipeline.add(Aggregates.skip(skip));
-                pipeline.add(Aggregates.limit(limit));
-
-                pipeline.add(Aggregates.match(Filters.eq("parentId", null)));
+                // Paginating the roots only, the lookup runs on a single page of them
+                pipeline.add(Aggregates.match(Filters.and(
+                        principal.getReadFilter(),
+                        Filters.eq("parentId", null),
+                        ServiceUtils.getAfterFilterFor(after)
+                )));
+                pipeline.add(Aggregates.sort(Sorts.ascending("_id")));
+                pipeline.add(Aggregates.limit(limit + 1));
 
                 pipeline.add(Aggregates.graphLookup(
                         "dashboards",
@@ -234,22 +592,14 @@ public class DashboardService {
                         "children"
                 ));
 
-                return dashboardsCollection
+                Page<Dashboard> page = Page.of(dashboardsCollection
                         .aggregate(pipeline, Dashboard.class)
-                        .into(new ArrayList<>())
-                        .stream()
-                        .map(dashboard -> {
-                            Dashboard parent;
-                            try {
-                                parent = dashboard.clone();
-                                parent.setChildren(new ArrayList<>());
-                            } catch (CloneNotSupportedException e) {
-                                throw new RuntimeException(e);
-                            }
-
-                            recursiveHierarchy(dashboard.getChildren(), parent);
-                            return parent;
-                        }).collect(Collectors.toList());
+                        .into(new ArrayList<>()), limit);
+                page.getData().forEach(dashboard -> HierarchyUtils.build(dashboard, dashboard.getChildren()));
+                return page;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -257,64 +607,34 @@ public class DashboardService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
-    }
-
-    /**
-     * Build a hierarchy of dashboards
-     * @param parent parent to start from
-     * @param input list of dashboards
-     */
-    void buildHierarchyTree(Dashboard parent, List<Dashboard> input) {
-        List<Dashboard> children = input
-                .stream()
-                .filter(next -> parent.getId().equals(next.getParentId()))
-                .collect(Collectors.toList());
-
-        parent.setChildren(children);
-        if (children.size() == 0) {
-            return;
-        }
-
-        children.forEach(next -> buildHierarchyTree(next, input));
-    }
-
-    /**
-     * Build a hierarchy of dashboards
-     * @param dashboards list of dashboards
-     * @param parent parent to start from
-     */
-    public void recursiveHierarchy(List<Dashboard> dashboards, Dashboard parent) {
-        CompletableFuture.supplyAsync(() -> {
-            for (Dashboard dashboard : dashboards) {
-                if (dashboard.getParentId().equals(parent.getId())) {
-                    parent.getChildren().add(dashboard);
-                    recursiveHierarchy(dashboards, dashboard);
-                }
-            }
-            return null;
         });
     }
 
     /**
      * Save a dashboard into the database
-     * @param user used for authentication
+     * @param principal used for authentication
      * @param dashboard to be saved
      * @return the saved dashboard
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<Dashboard> save(User user, Dashboard dashboard) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Dashboard> save(Principal principal, Dashboard dashboard) {
+        return executionContext.write(() -> {
             try {
                 MongoCollection<Dashboard> collection = mongoDB.getMongoDatabase()
                         .getCollection("dashboards", Dashboard.class);
 
-                dashboard.getReadACL().add(user.getId().toString());
-                dashboard.getWriteACL().add(user.getId().toString());
+                dashboard.getReadACL().add(principal.getId());
+                dashboard.getWriteACL().add(principal.getId());
+                setPathFrom(dashboard, parentFor(collection, dashboard.getId(), dashboard.getParentId()));
                 collection.insertOne(dashboard);
+                dashboardIndex.put(dashboard.getId(), dashboard.getParentId());
+                visibilityCache.put(dashboard.getId(), dashboard.getReadACL(), dashboard.getWriteACL());
 
                 return dashboard;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
@@ -322,19 +642,20 @@ public class DashboardService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
     }
 
     /**
      * Update a dashboard in the database
-     * @param user used for authentication
+     * @param principal used for authentication
      * @param dashboard to be updated
      * @return the updated dashboard
-     * @throws CompletionException in case data is not found or an internal error occurred
+     * @throws CompletionException in case data (or the new parent) is not found, the new parent is not writable,
+     * the change of parent would create a cycle or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<Dashboard> update(User user, Dashboard dashboard) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Dashboard> update(Principal principal, Dashboard dashboard) {
+        return executionContext.write(() -> {
             try {
                 MongoCollection<Dashboard> collection = mongoDB.getMongoDatabase()
                         .getCollection("dashboards", Dashboard.class);
@@ -345,12 +666,26 @@ public class DashboardService {
                     throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
                 }
 
-                if (!user.hasReadWriteAccessFor(foundDashboard)) {
+                if (!principal.hasReadWriteAccessFor(foundDashboard)) {
                     throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
                 }
                 dashboard.getReadACL().addAll(foundDashboard.getReadACL());
                 dashboard.getWriteACL().addAll(foundDashboard.getWriteACL());
+
+                boolean moved = !Objects.equals(foundDashboard.getParentId(), dashboard.getParentId());
+                if (moved) {
+                    setPathFrom(dashboard, newParentFor(principal, collection, dashboard.getId(), dashboard.getParentId()));
+                } else {
+                    // the stored path may not have been backfilled yet, and the migration skips paths once written
+                    dashboard.setAncestors(ancestorsOf(foundDashboard));
+                    dashboard.setDepth(dashboard.getAncestors().size());
+                }
                 collection.replaceOne(Filters.eq("_id", dashboard.getId()), dashboard);
+                if (moved) {
+                    rewriteDescendantPaths(collection, dashboard);
+                }
+                dashboardIndex.put(dashboard.getId(), dashboard.getParentId());
+                visibilityCache.put(dashboard.getId(), dashboard.getReadACL(), dashboard.getWriteACL());
 
                 return dashboard;
             } catch (CompletionException ex) {
@@ -363,22 +698,164 @@ public class DashboardService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
+    }
+
+    /**
+     * Move a dashboard, together with all of its descendants, under a new parent
+     * @param principal used for authentication
+     * @param id of the dashboard to be moved
+     * @param parentId of the new parent, null to move the dashboard to the root level
+     * @return the moved dashboard
+     * @throws CompletionException in case data is not found, the move would create a cycle or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<Dashboard> move(Principal principal, String id, ObjectId parentId) {
+        return executionContext.bulk(() -> {
+            try {
+                MongoCollection<Dashboard> collection = mongoDB.getMongoDatabase()
+                        .getCollection("dashboards", Dashboard.class);
+
+                if (Strings.isNullOrEmpty(id) || !ObjectId.isValid(id)) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Incorrect or missing id!")));
+                }
+
+                Dashboard dashboard = collection.find(Filters.eq("_id", new ObjectId(id))).first();
+                if (dashboard == null) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
+                }
+
+                if (!principal.hasReadWriteAccessFor(dashboard)) {
+                    throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
+                }
+
+                Dashboard parent = newParentFor(principal, collection, dashboard.getId(), parentId);
+                dashboard.setParentId(parentId);
+                setPathFrom(dashboard, parent);
+                collection.updateOne(Filters.eq("_id", dashboard.getId()), Updates.combine(
+                        Updates.set("parentId", dashboard.getParentId()),
+                        Updates.set("ancestors", dashboard.getAncestors()),
+                        Updates.set("depth", dashboard.getDepth())
+                ));
+                rewriteDescendantPaths(collection, dashboard);
+                dashboardIndex.put(dashboard.getId(), dashboard.getParentId());
+
+                return dashboard;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Find the parent of a dashboard, rejecting parents that would create a cycle
+     * @param collection of dashboards
+     * @param id of the dashboard, null for new dashboards
+     * @param parentId of the parent, null for root dashboards
+     * @return the parent, null if there is no parent or it doesn't exist (yet)
+     */
+    private Dashboard parentFor(MongoCollection<Dashboard> collection, ObjectId id, ObjectId parentId) {
+        if (parentId == null) {
+            return null;
+        }
+        if (parentId.equals(id)) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("A dashboard cannot be its own parent!")));
+        }
+        Dashboard parent = collection.find(Filters.eq("_id", parentId)).first();
+        if (parent != null && id != null && ancestorsOf(parent).contains(id)) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("A dashboard cannot be moved under one of its descendants!")));
+        }
+        return parent;
+    }
+
+    /**
+     * Find the parent an existing dashboard is moved under, which unlike the parent of a new dashboard
+     * has to exist and be writable by the principal
+     * @param principal used for authentication
+     * @param collection of dashboards
+     * @param id of the dashboard
+     * @param parentId of the new parent, null for the root level
+     * @return the new parent, null for the root level
+     */
+    private Dashboard newParentFor(Principal principal, MongoCollection<Dashboard> collection, ObjectId id, ObjectId parentId) {
+        Dashboard parent = parentFor(collection, id, parentId);
+        if (parentId != null && parent == null) {
+            throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Parent dashboard doesn't exist!")));
+        }
+        if (parent != null && !principal.hasReadWriteAccessFor(parent)) {
+            throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
+        }
+        return parent;
+    }
+
+    /**
+     * The ancestors of a stored dashboard. Until the ancestors migration has completed the path of a dashboard
+     * may not have been backfilled yet, so it is taken from the dashboard index instead
+     * @param dashboard stored in the database
+     * @return ids of the ancestors, from the root down to the direct parent
+     */
+    private List<ObjectId> ancestorsOf(Dashboard dashboard) {
+        if (migrationState.isAncestorsReady()) {
+            return dashboard.getAncestors();
+        }
+        return dashboardIndex.ancestors(dashboard.getId());
+    }
+
+    /**
+     * Set the materialized path of a dashboard from the path of its parent
+     * @param dashboard to set the path for
+     * @param parent of the dashboard, null if there is no parent or it doesn't exist (yet)
+     */
+    private void setPathFrom(Dashboard dashboard, Dashboard parent) {
+        List<ObjectId> ancestors = new ArrayList<>();
+        if (parent != null) {
+            ancestors.addAll(ancestorsOf(parent));
+        }
+        if (dashboard.getParentId() != null) {
+            ancestors.add(dashboard.getParentId());
+        }
+        dashboard.setAncestors(ancestors);
+        dashboard.setDepth(ancestors.size());
+    }
+
+    /**
+     * Rewrite the paths of all descendants of a moved dashboard with a single update,
+     * replacing everything above the moved dashboard with its new path. An update pipeline, needs MongoDB 4.2
+     * @param collection of dashboards
+     * @param moved dashboard, with its new path already set
+     */
+    private static void rewriteDescendantPaths(MongoCollection<Dashboard> collection, Dashboard moved) {
+        Document ownPath = new Document("$slice", List.of(
+                "$ancestors",
+                new Document("$indexOfArray", List.of("$ancestors", moved.getId())),
+                new Document("$size", "$ancestors")
+        ));
+        collection.updateMany(Filters.eq("ancestors", moved.getId()), List.of(
+                new Document("$set", new Document("ancestors", new Document("$concatArrays", List.of(moved.getAncestors(), ownPath)))),
+                new Document("$set", new Document("depth", new Document("$size", "$ancestors")))
+        ));
     }
 
     /**
      * Delete a dashboard from the database
-     * @param user used for authentication
+     * @param principal used for authentication
      * @param dashboard to be deleted
      * @return the deleted dashboard
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<Dashboard> delete(User user, Dashboard dashboard) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Dashboard> delete(Principal principal, Dashboard dashboard) {
+        return executionContext.bulk(() -> {
             try {
                 MongoCollection<Dashboard> dashboardsCollection = mongoDB.getMongoDatabase()
-                        .getCollection("dashboardsSmall", Dashboard.class);
+                        .getCollection("dashboards", Dashboard.class);
 
                 FindIterable<Dashboard> findResult = dashboardsCollection.find(Filters.eq("_id", dashboard.getId()));
                 Dashboard foundDashboard = findResult.first();
@@ -386,11 +863,21 @@ public class DashboardService {
                     throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
                 }
 
-                if (!user.hasReadWriteAccessFor(foundDashboard)) {
+                if (!principal.hasReadWriteAccessFor(foundDashboard)) {
                     throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
                 }
 
-                return dashboardsCollection;
+                List<ObjectId> dashboardsIds = subtreeOf(dashboardsCollection, dashboard.getId());
+
+                MongoCollection<Content> contentsCollection = mongoDB.getMongoDatabase()
+                        .getCollection("dashboardsContent", Content.class);
+                for (List<ObjectId> chunk : Lists.partition(dashboardsIds, IN_CHUNK_SIZE)) {
+                    contentsCollection.deleteMany(Filters.in("dashboardId", chunk));
+                    dashboardsCollection.deleteMany(Filters.in("_id", chunk));
+                }
+                dashboardIndex.remove(dashboardsIds);
+
+                return dashboard;
             } catch (CompletionException ex) {
                 ex.printStackTrace();
                 throw ex;
@@ -401,45 +888,128 @@ public class DashboardService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current()
-        ).thenApply(dashboardsCollection -> {
+        });
+    }
+
+    /**
+     * Find a dashboard and all of its descendants through the materialized path. The dashboard index also
+     * covers dashboards that the ancestors backfill has not reached yet
+     * @param collection of dashboards
+     * @param id of the root of the subtree
+     * @return the ids of the subtree, the root first
+     */
+    private List<ObjectId> subtreeOf(MongoCollection<Dashboard> collection, ObjectId id) {
+        Set<ObjectId> subtree = new LinkedHashSet<>();
+        subtree.add(id);
+        collection.find(Filters.eq("ancestors", id))
+                .projection(Projections.include("_id"))
+                .map(BaseModel::getId)
+                .into(subtree);
+        subtree.addAll(dashboardIndex.descendants(List.of(id)));
+        return new ArrayList<>(subtree);
+    }
+
+    /**
+     * Start sharing a dashboard, all of its descendants and all of their items with a user or role, or revoking
+     * the access of a user or role to them. The job runs in the background on the bulk lane, its progress is
+     * reported by {@link #shareJob(Principal, String)}.
+     * Only the dashboards and items the principal can write are changed. Public documents are left alone when
+     * granting, and revoking the last entry of the acls leaves a document as it is instead of making it public.
+     * @param principal used for authentication
+     * @param id of the root dashboard of the subtree
+     * @param request the user or role to share with, and whether to grant write access or to revoke access
+     * @return the started job
+     * @throws CompletionException in case data is not found, the bulk lane is saturated or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<ShareJob> share(Principal principal, String id, ShareDashboardRequest request) {
+        return executionContext.write(() -> {
             try {
-                List<Bson> pipeline = new ArrayList<>();
-                //pipeline.add(Aggregates.match(ServiceUtils.getWriteAccessFilterFor(user.getAccessIds())));
-                pipeline.add(Aggregates.match(Filters.eq("_id", dashboard.getId())));
+                MongoCollection<Dashboard> collection = mongoDB.getMongoDatabase()
+                        .getCollection("dashboards", Dashboard.class);
 
-                pipeline.add(Aggregates.graphLookup(
-                        "dashboardsSmall",
-                        "$_id",
-                        "_id",
-                        "parentId",
-                        "children",
-                        new GraphLookupOptions()
-                                .restrictSearchWithMatch(Filters.nin("readACL", user.getAccessIds()))
-                ));
+                if (Strings.isNullOrEmpty(id) || !ObjectId.isValid(id)) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Incorrect or missing id!")));
+                }
+                if (Strings.isNullOrEmpty(request.getPrincipal())) {
+                    throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Principal cannot be empty!")));
+                }
 
-                List<Dashboard> dashboards = dashboardsCollection
-                        .aggregate(pipeline, Dashboard.class)
-                        .into(new ArrayList<>());
+                Dashboard dashboard = collection.find(Filters.eq("_id", new ObjectId(id))).first();
+                if (dashboard == null) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
+                }
 
-                List<ObjectId> dashboardsIds = dashboards.get(0)
-                        .getChildren()
-                        .stream()
-                        //.filter(user::hasReadWriteAccessFor)
-                        .map(Dashboard::getId)
-                        .collect(Collectors.toList());
-                dashboardsIds.add(dashboard.getId());
-
-                mongoDB.getMongoDatabase()
-                        .getCollection("dashboardsContent", Content.class)
-                        .deleteMany(Filters.in("dashboardId", dashboardsIds));
-
-                dashboardsCollection.deleteMany(Filters.or(
-                        Filters.eq("_id", dashboard.getId()),
-                        Filters.in("parentId", dashboardsIds)
-                ));
+                if (!principal.hasReadWriteAccessFor(dashboard)) {
+                    throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
+                }
 
-                return dashboard;
+                Document job = new Document("_id", new ObjectId())
+                        .append("dashboardId", dashboard.getId())
+                        .append("principal", request.getPrincipal())
+                        .append("write", request.isWrite())
+                        .append("revoke", request.isRevoke())
+                        .append("startedBy", principal.getId())
+                        .append("status", ShareJobStatus.RUNNING.name())
+                        .append("dashboards", 0L)
+                        .append("processed", 0L)
+                        .append("updatedDashboards", 0L)
+                        .append("updatedContents", 0L)
+                        .append("startedAt", new Date());
+                mongoDB.getMongoDatabase().getCollection(ShareJob.COLLECTION).insertOne(job);
+
+                return job;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Mongo error " + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        }).thenCompose((job) -> {
+            ObjectId jobId = job.getObjectId("_id");
+            CompletableFuture<Void> run = executionContext.bulk(() -> {
+                runShare(jobId, principal, job.getObjectId("dashboardId"), request);
+                return null;
+            });
+            if (run.isCompletedExceptionally()) {
+                // the bulk lane is saturated, the job never started
+                return executionContext.write(() -> {
+                    finishShare(jobId, ShareJobStatus.FAILED, "Service busy, try again later!");
+                    return null;
+                }).thenCompose((ignored) -> run).thenApply((ignored) -> ShareJob.from(job));
+            }
+            return CompletableFuture.completedFuture(ShareJob.from(job));
+        });
+    }
+
+    /**
+     * Get the progress of a share job
+     * @param principal used for authentication, only the user who started the job can see it
+     * @param jobId of the job
+     * @return the job
+     * @throws CompletionException in case data is not found or an internal error occurred
+     * @see io.exercise.api.controllers.DashboardController
+     */
+    public CompletableFuture<ShareJob> shareJob(Principal principal, String jobId) {
+        return executionContext.read(() -> {
+            try {
+                if (Strings.isNullOrEmpty(jobId) || !ObjectId.isValid(jobId)) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Incorrect or missing id!")));
+                }
+
+                Document job = mongoDB.getMongoDatabase()
+                        .getCollection(ShareJob.COLLECTION)
+                        .find(Filters.and(Filters.eq("_id", new ObjectId(jobId)), Filters.eq("startedBy", principal.getId())))
+                        .first();
+                if (job == null) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
+                }
+
+                return ShareJob.from(job);
             } catch (CompletionException ex) {
                 ex.printStackTrace();
                 throw ex;
@@ -452,4 +1022,140 @@ public class DashboardService {
             }
         });
     }
+
+    /**
+     * Apply a share job to the subtree, a chunk of dashboards and their items per pair of updateMany calls
+     * instead of a read and a replace per document, recording the progress after every chunk
+     * @param jobId of the job
+     * @param principal who started the job, only the documents it can write are changed
+     * @param id of the root dashboard of the subtree
+     * @param request the user or role to share with, and whether to grant write access or to revoke access
+     */
+    private void runShare(ObjectId jobId, Principal principal, ObjectId id, ShareDashboardRequest request) {
+        try {
+            MongoCollection<Dashboard> dashboardsCollection = mongoDB.getMongoDatabase()
+                    .getCollection("dashboards", Dashboard.class);
+            MongoCollection<Content> contentsCollection = mongoDB.getMongoDatabase()
+                    .getCollection("dashboardsContent", Content.class);
+            MongoCollection<Document> jobsCollection = mongoDB.getMongoDatabase()
+                    .getCollection(ShareJob.COLLECTION);
+
+            List<ObjectId> dashboardsIds = subtreeOf(dashboardsCollection, id);
+            jobsCollection.updateOne(Filters.eq("_id", jobId), Updates.set("dashboards", (long) dashboardsIds.size()));
+
+            Bson needed = shareFilterFor(request);
+            List<Bson> pipeline = sharePipelineFor(request);
+            for (List<ObjectId> chunk : Lists.partition(dashboardsIds, config.getInt("share-jobs.batch-size"))) {
+                long dashboards = dashboardsCollection
+                        .updateMany(Filters.and(Filters.in("_id", chunk), principal.getWriteFilter(), needed), pipeline)
+                        .getModifiedCount();
+                long contents = contentsCollection
+                        .updateMany(Filters.and(Filters.in("dashboardId", chunk), principal.getWriteFilter(), needed), pipeline)
+                        .getModifiedCount();
+                jobsCollection.updateOne(Filters.eq("_id", jobId), Updates.combine(
+                        Updates.inc("processed", (long) chunk.size()),
+                        Updates.inc("updatedDashboards", dashboards),
+                        Updates.inc("updatedContents", contents)
+                ));
+            }
+            // one invalidation instead of an update message per dashboard
+            visibilityCache.invalidateAll();
+            finishShare(jobId, ShareJobStatus.COMPLETED, null);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            visibilityCache.invalidateAll();
+            finishShare(jobId, ShareJobStatus.FAILED, ex.getMessage());
+        }
+    }
+
+    private void finishShare(ObjectId jobId, ShareJobStatus status, String error) {
+        mongoDB.getMongoDatabase().getCollection(ShareJob.COLLECTION).updateOne(Filters.eq("_id", jobId), Updates.combine(
+                Updates.set("status", status.name()),
+                Updates.set("error", error),
+                Updates.set("completedAt", new Date())
+        ));
+    }
+
+    /**
+     * Only the documents a share job would actually change, so that running a job again is cheap
+     * @param request of the job
+     * @return the filter
+     */
+    private static Bson shareFilterFor(ShareDashboardRequest request) {
+        List<Object> forms = aclFormsOf(request.getPrincipal());
+        if (request.isRevoke()) {
+            return Filters.or(Filters.in("readACL", forms), Filters.in("writeACL", forms));
+        }
+        // public documents can already be read and written by everyone, adding an entry would make them private
+        Bson notPublic = Filters.nor(Filters.and(
+                Filters.eq("readACL", new ArrayList<String>()),
+                Filters.eq("writeACL", new ArrayList<String>())
+        ));
+        Object value = ServiceUtils.toAclValue(request.getPrincipal());
+        if (request.isWrite()) {
+            return Filters.and(notPublic, Filters.or(Filters.ne("readACL", value), Filters.ne("writeACL", value)));
+        }
+        return Filters.and(notPublic, Filters.ne("readACL", value));
+    }
+
+    /**
+     * The update of a share job, a pipeline that adds the entry to (or pulls it from) the acls like $addToSet
+     * and $pull would, and then derives the access field from the new acls, which $addToSet and $pull
+     * can not do in the same update. Both stored forms of a user id are replaced by the binary one.
+     * A revoke that would empty both acls, and so make the document public, leaves them as they are
+     * @param request of the job
+     * @return the update pipeline
+     */
+    private static List<Bson> sharePipelineFor(ShareDashboardRequest request) {
+        List<Object> forms = aclFormsOf(request.getPrincipal());
+        Object value = ServiceUtils.toAclValue(request.getPrincipal());
+        Document readACL = aclExpression("readACL", forms, request.isRevoke() ? null : value);
+        Document writeACL = request.isRevoke() || request.isWrite()
+                ? aclExpression("writeACL", forms, request.isRevoke() ? null : value)
+                : new Document("$ifNull", Arrays.asList("$writeACL", List.of()));
+        Document union = new Document("$setUnion", List.of(
+                new Document("$ifNull", Arrays.asList("$readACL", List.of())),
+                new Document("$ifNull", Arrays.asList("$writeACL", List.of()))
+        ));
+
+        return List.of(
+                new Document("$set", new Document("_readACL", readACL).append("_writeACL", writeACL)),
+                new Document("$set", new Document("_empty", new Document("$eq", Arrays.asList(
+                        new Document("$size", new Document("$setUnion", List.of("$_readACL", "$_writeACL"))), 0)))),
+                new Document("$set", new Document("readACL", new Document("$cond", List.of("$_empty", "$readACL", "$_readACL")))
+                        .append("writeACL", new Document("$cond", List.of("$_empty", "$writeACL", "$_writeACL")))),
+                new Document("$set", new Document(ServiceUtils.ACCESS_FIELD, new Document("$cond", List.of(
+                        new Document("$eq", Arrays.asList(new Document("$size", union), 0)),
+                        new Document("$literal", List.of(Principal.PUBLIC)),
+                        union
+                )))),
+                new Document("$unset", List.of("_readACL", "_writeACL", "_empty"))
+        );
+    }
+
+    /**
+     * @param field of the acl
+     * @param forms of the entry to remove
+     * @param value to add, null to only remove the entry
+     * @return the expression of the new acl
+     */
+    private static Document aclExpression(String field, List<Object> forms, Object value) {
+        Document removed = new Document("$setDifference", List.of(
+                new Document("$ifNull", Arrays.asList("$" + field, List.of())),
+                new Document("$literal", forms)
+        ));
+        if (value == null) {
+            return removed;
+        }
+        return new Document("$setUnion", List.of(removed, new Document("$literal", List.of(value))));
+    }
+
+    /**
+     * @param entry of an acl
+     * @return the forms the entry can be stored in, the hex string and the ObjectId for the id of a user
+     */
+    private static List<Object> aclFormsOf(String entry) {
+        Object value = ServiceUtils.toAclValue(entry);
+        return value instanceof ObjectId ? List.of(entry, value) : List.of(entry);
+    }
 }
@@ -0,0 +1,54 @@
+package io.exercise.api.services;
+
+import com.google.inject.Inject;
+import io.exercise.api.cache.LoginThrottle;
+import io.exercise.api.cache.PrincipalCache;
+import io.exercise.api.cache.RoleHierarchy;
+import io.exercise.api.cache.UserLoader;
+import io.exercise.api.cache.VisibilityCache;
+
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MetricsService collects the runtime metrics of the application, e.g. the hit rates of its caches.
+ */
+@Singleton
+public class MetricsService {
+
+    @Inject
+    PrincipalCache principalCache;
+
+    @Inject
+    UserLoader userLoader;
+
+    @Inject
+    VisibilityCache visibilityCache;
+
+    @Inject
+    PasswordService passwordService;
+
+    @Inject
+    LoginThrottle loginThrottle;
+
+    @Inject
+    RoleHierarchy roleHierarchy;
+
+    /**
+     * Get the current metrics, grouped by the component they belong to
+     * @return the metrics
+     * @see io.exercise.api.controllers.MetricsController
+     */
+    public CompletableFuture<Map<String, Object>> metrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put(PrincipalCache.NAME, principalCache.metrics());
+        metrics.put(UserLoader.NAME, userLoader.metrics());
+        metrics.put(VisibilityCache.NAME, visibilityCache.metrics());
+        metrics.put("passwordHashing", passwordService.metrics());
+        metrics.put("loginThrottle", loginThrottle.metrics());
+        metrics.put(RoleHierarchy.NAME, roleHierarchy.metrics());
+        return CompletableFuture.completedFuture(metrics);
+    }
+}
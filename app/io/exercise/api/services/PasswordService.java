@@ -0,0 +1,141 @@
+package io.exercise.api.services;
+
+import akka.Done;
+import akka.actor.CoordinatedShutdown;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.utils.Hash;
+import play.Logger;
+import play.libs.Json;
+import play.mvc.Http;
+
+import javax.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Hashes and checks passwords on a fixed size pool of its own, so that a burst of logins can only ever
+ * use up the cores of that pool and never stall the other endpoints. The queue of the pool is bounded,
+ * hashes submitted while it is full fail right away with 503 Service Unavailable.
+ * Passwords hashed with another cost than the configured one are rehashed on the next successful login,
+ * see {@link #needsRehash(String)}.
+ */
+@Singleton
+public class PasswordService {
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+
+    private final LongAdder hashes = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @Inject
+    public PasswordService(Config config, CoordinatedShutdown coordinatedShutdown) {
+        this.cost = config.getInt("password-hashing.cost");
+        int threads = config.getInt("password-hashing.threads");
+        AtomicInteger count = new AtomicInteger();
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getInt("password-hashing.queue-size")),
+                (runnable) -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setContextClassLoader(classLoader);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        coordinatedShutdown.addTask(CoordinatedShutdown.PhaseServiceRequestsDone(), "shutting-down-password-hashing", () -> {
+            Logger.of(this.getClass()).debug("Shutting down password hashing!");
+            executor.shutdown();
+            return CompletableFuture.completedFuture(Done.done());
+        });
+    }
+
+    /**
+     * Hash a clear password with the configured cost
+     * @param password clear password
+     * @return the hashed password, or a 503 in case the pool is saturated
+     */
+    public CompletableFuture<String> hash(String password) {
+        return submit(() -> Hash.createPassword(password, cost));
+    }
+
+    /**
+     * Check a clear password against a hashed one
+     * @param candidate clear password
+     * @param password hashed password
+     * @return whether the passwords match, or a 503 in case the pool is saturated
+     */
+    public CompletableFuture<Boolean> check(String candidate, String password) {
+        return submit(() -> {
+            try {
+                return Hash.checkPassword(candidate, password);
+            } catch (Exception ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        });
+    }
+
+    /**
+     * @param password hashed password
+     * @return whether the password was hashed with another cost than the configured one
+     */
+    public boolean needsRehash(String password) {
+        return Hash.costOf(password) != cost;
+    }
+
+    /**
+     * @return number of hashes, their average time on the pool and in its queue, the current queue depth,
+     * active threads and the number of rejected hashes
+     */
+    public Map<String, Object> metrics() {
+        long count = hashes.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("cost", cost);
+        metrics.put("hashes", count);
+        metrics.put("averageHashMillis", count == 0 ? 0 : hashNanos.sum() / count / 1_000_000.0);
+        metrics.put("averageWaitMillis", count == 0 ? 0 : waitNanos.sum() / count / 1_000_000.0);
+        metrics.put("queueDepth", executor.getQueue().size());
+        metrics.put("active", executor.getActiveCount());
+        metrics.put("rejected", rejected.sum());
+        return metrics;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        long submitted = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                waitNanos.add(start - submitted);
+                try {
+                    return supplier.get();
+                } catch (CompletionException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+                } finally {
+                    hashNanos.add(System.nanoTime() - start);
+                    hashes.increment();
+                }
+            }, executor);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(
+                    new CompletionException(new RequestException(Http.Status.SERVICE_UNAVAILABLE, Json.toJson("Service busy, try again later!")))
+            );
+        }
+    }
+}
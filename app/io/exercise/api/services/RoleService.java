@@ -0,0 +1,244 @@
+package io.exercise.api.services;
+
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import io.exercise.api.cache.RoleHierarchy;
+import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.models.Principal;
+import io.exercise.api.models.Role;
+import io.exercise.api.mongo.DatabaseExecutionContext;
+import io.exercise.api.mongo.IMongoDB;
+import org.bson.types.ObjectId;
+import play.libs.Json;
+import play.mvc.Http;
+
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * RoleService contains service methods for RoleController. Every change rebuilds the role hierarchy.
+ */
+@Singleton
+public class RoleService {
+
+    @Inject
+    DatabaseExecutionContext executionContext;
+
+    @Inject
+    IMongoDB mongoDB;
+
+    @Inject
+    RoleHierarchy roleHierarchy;
+
+    /**
+     * Get all the roles the principal can read, by name
+     * @param principal used for authentication
+     * @return list of roles
+     * @throws CompletionException in case an internal error occurred
+     * @see io.exercise.api.controllers.RoleController
+     */
+    public CompletableFuture<List<Role>> all(Principal principal) {
+        return executionContext.read(() -> {
+            try {
+                return mongoDB.getMongoDatabase()
+                        .getCollection(RoleHierarchy.COLLECTION, Role.class)
+                        .find(principal.getReadFilter())
+                        .sort(Sorts.ascending("name"))
+                        .into(new ArrayList<>());
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not fetch data!" + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Save a role into the database
+     * @param principal used for authentication
+     * @param role to be saved
+     * @return the saved role
+     * @throws CompletionException in case the role already exists, is not held by the principal, inherits roles
+     * the principal does not have or an internal error occurred
+     * @see io.exercise.api.controllers.RoleController
+     */
+    public CompletableFuture<Role> save(Principal principal, Role role) {
+        return executionContext.write(() -> {
+            try {
+                MongoCollection<Role> collection = mongoDB.getMongoDatabase()
+                        .getCollection(RoleHierarchy.COLLECTION, Role.class);
+
+                checkName(role.getName());
+                checkHolder(principal, role.getName());
+                checkDelegation(principal, role.getInherits());
+                role.getReadACL().add(principal.getId());
+                role.getWriteACL().add(principal.getId());
+                collection.insertOne(role);
+                roleHierarchy.rebuild();
+
+                return role;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoWriteException ex) {
+                ex.printStackTrace();
+                if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                    throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Role already exists!")));
+                }
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not insert data!" + ex));
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not insert data!" + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Update a role in the database
+     * @param principal used for authentication
+     * @param role to be updated
+     * @return the updated role
+     * @throws CompletionException in case data is not found, the role (or its new name) is not held by the principal,
+     * the role would inherit roles the principal does not have or an internal error occurred
+     * @see io.exercise.api.controllers.RoleController
+     */
+    public CompletableFuture<Role> update(Principal principal, Role role) {
+        return executionContext.write(() -> {
+            try {
+                MongoCollection<Role> collection = mongoDB.getMongoDatabase()
+                        .getCollection(RoleHierarchy.COLLECTION, Role.class);
+
+                Role foundRole = collection.find(Filters.eq("_id", role.getId())).first();
+                if (foundRole == null) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
+                }
+
+                if (!principal.hasReadWriteAccessFor(foundRole)) {
+                    throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
+                }
+                checkName(role.getName());
+                checkHolder(principal, role.getName());
+                // only the newly inherited roles are delegated by this principal, unless the role is renamed,
+                // which hands all of its inherited roles to the holders of the new name
+                List<String> delegated = new ArrayList<>(role.getInherits());
+                if (role.getName().equals(foundRole.getName())) {
+                    delegated.removeAll(foundRole.getInherits());
+                }
+                checkDelegation(principal, delegated);
+                role.getReadACL().addAll(foundRole.getReadACL());
+                role.getWriteACL().addAll(foundRole.getWriteACL());
+                collection.replaceOne(Filters.eq("_id", role.getId()), role);
+                roleHierarchy.rebuild();
+
+                return role;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoWriteException ex) {
+                ex.printStackTrace();
+                if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                    throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Role already exists!")));
+                }
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not update data!" + ex));
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not update data!" + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Delete a role from the database, the users keep it but it no longer implies any other role
+     * @param principal used for authentication
+     * @param role to be deleted
+     * @return the deleted role
+     * @throws CompletionException in case data is not found or an internal error occurred
+     * @see io.exercise.api.controllers.RoleController
+     */
+    public CompletableFuture<Role> delete(Principal principal, Role role) {
+        return executionContext.write(() -> {
+            try {
+                MongoCollection<Role> collection = mongoDB.getMongoDatabase()
+                        .getCollection(RoleHierarchy.COLLECTION, Role.class);
+
+                Role foundRole = collection.find(Filters.eq("_id", role.getId())).first();
+                if (foundRole == null) {
+                    throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("Could not find data!")));
+                }
+
+                if (!principal.hasReadWriteAccessFor(foundRole)) {
+                    throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
+                }
+                collection.deleteOne(Filters.eq("_id", role.getId()));
+                roleHierarchy.rebuild();
+
+                return foundRole;
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not delete data!" + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Role names share the acls with the ids of the users and *, a role must not be mistaken for either
+     * @param name of the role
+     */
+    private static void checkName(String name) {
+        if (Strings.isNullOrEmpty(name) || name.equals(Principal.PUBLIC) || ObjectId.isValid(name)) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid role name!")));
+        }
+    }
+
+    /**
+     * A role can only be defined by its holders, otherwise anyone could hand the roles they have to the holders
+     * of a role nobody has defined yet
+     * @param principal used for authentication
+     * @param name of the role to be defined
+     */
+    private static void checkHolder(Principal principal, String name) {
+        if (!principal.getAccessIds().contains(name)) {
+            throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("Cannot define role " + name + "!")));
+        }
+    }
+
+    /**
+     * A role can only be made to imply roles the principal has itself, otherwise anyone could grant
+     * themselves any role through a role they hold
+     * @param principal used for authentication
+     * @param inherits the roles to be implied
+     */
+    private static void checkDelegation(Principal principal, List<String> inherits) {
+        for (String inherited : inherits) {
+            if (inherited.equals(Principal.PUBLIC) || ObjectId.isValid(inherited) || !principal.getAccessIds().contains(inherited)) {
+                throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("Cannot inherit role " + inherited + "!")));
+            }
+        }
+    }
+}
@@ -1,27 +1,36 @@
 package io.exercise.api.services;
 
+import akka.stream.javadsl.Source;
+import akka.util.ByteString;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.inject.Inject;
 import io.exercise.api.exceptions.RequestException;
 import io.exercise.api.utils.DatabaseUtils;
 import org.bson.Document;
-import play.libs.Json;
 import play.libs.concurrent.HttpExecutionContext;
+import play.http.HttpEntity;
 import play.mvc.Http;
 import play.mvc.Http.Request;
+import play.mvc.Result;
+import play.mvc.Results;
 
 import javax.inject.Singleton;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 @Singleton
 public class SerializationService {
@@ -31,19 +40,77 @@ public class SerializationService {
     @Inject
     ObjectMapper mapper;
 
-    public <T> CompletableFuture<JsonNode> toJsonNode(T result) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                return Json.toJson(result);
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, "parsing_exception"));
-            }
-        }, ec.current());
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    private static final ByteString NEW_LINE = ByteString.fromString("\n");
+    private static final ByteString ARRAY_START = ByteString.fromString("[");
+    private static final ByteString ARRAY_SEPARATOR = ByteString.fromString(",");
+    private static final ByteString ARRAY_END = ByteString.fromString("]");
+
+    /**
+     * Output buffer of the responses, one per thread and reused across them. Reset keeps its last block,
+     * at most 128KB, so the usual responses are written without growing a new buffer on every call
+     */
+    private static final ThreadLocal<ByteArrayBuilder> BUFFERS = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+    /**
+     * Serialize a response straight into bytes, on the calling thread, with the cached writer of its type
+     * and the buffer of the thread. Skips the intermediate JsonNode tree of Json.toJson, which Play would
+     * otherwise serialize a second time
+     * @param result to serialize
+     * @return ok result with the json bytes
+     * @throws CompletionException in case the result could not be serialized
+     */
+    public Result toResult(Object result) {
+        try {
+            ByteArrayBuilder buffer = BUFFERS.get();
+            buffer.reset();
+            writerFor(result).writeValue(buffer, result);
+            byte[] bytes = buffer.toByteArray();
+            return Results.ok().sendEntity(new HttpEntity.Strict(ByteString.fromArrayUnsafe(bytes), Optional.of(Http.MimeTypes.JSON)));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, "parsing_exception"));
+        }
+    }
+
+    /**
+     * ObjectWriters are immutable and thread safe, caching one per type keeps its serializer
+     * resolved instead of looking it up on every response
+     * @param value to be written
+     * @return the writer for the type of the value
+     */
+    private ObjectWriter writerFor(Object value) {
+        if (value == null) {
+            return mapper.writer();
+        }
+        return writers.computeIfAbsent(value.getClass(), mapper::writerFor);
+    }
+
+    /**
+     * Stream a source of models as a chunked response, written one element at a time so that
+     * no list or json tree of the whole response is held in memory. Clients that accept
+     * application/x-ndjson get one json document per line, everyone else gets a json array
+     * @param source of the models to stream
+     * @param request used for content negotiation
+     * @return the chunked result
+     */
+    public <T> Result toChunkedResult(Source<T, ?> source, Request request) {
+        boolean ndjson = request.header(Http.HeaderNames.ACCEPT)
+                .map(accept -> accept.contains(NDJSON))
+                .orElse(false);
+
+        Source<ByteString, ?> json = source.map(next -> ByteString.fromArrayUnsafe(writerFor(next).writeValueAsBytes(next)));
+        if (ndjson) {
+            return Results.ok().chunked(json.map(next -> next.concat(NEW_LINE))).as(NDJSON);
+        }
+        return Results.ok().chunked(json.intersperse(ARRAY_START, ARRAY_SEPARATOR, ARRAY_END)).as(Http.MimeTypes.JSON);
     }
 
     public CompletableFuture<Document> parseBody(Request request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return inline(() -> {
             try {
                 JsonNode json = request.body().asJson();
                 if (!json.isObject()) {
@@ -57,11 +124,11 @@ public class SerializationService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, "parsing_exception"));
             }
-        }, ec.current());
+        });
     }
 
     public <T> CompletableFuture<T> parseBodyOfType(Request request, Class<T> valueType) {
-        return CompletableFuture.supplyAsync(() -> this.syncParseBodyOfType(request, valueType), ec.current());
+        return inline(() -> this.syncParseBodyOfType(request, valueType));
     }
 
     public <T> T syncParseBodyOfType (Request request, Class<T> valueType) {
@@ -81,7 +148,7 @@ public class SerializationService {
     }
 
     public CompletableFuture<List<Document>> parseListBody(Request request) {
-        return CompletableFuture.supplyAsync(() -> {
+        return inline(() -> {
             try {
                 JsonNode json = request.body().asJson();
                 if (!json.isArray()) {
@@ -95,7 +162,7 @@ public class SerializationService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, "parsing_exception"));
             }
-        }, ec.current());
+        });
     }
 
     public <T> CompletableFuture<List<T>> parseFileOfType(Request request, String key, Class<T> valueType) {
@@ -117,6 +184,22 @@ public class SerializationService {
     }
 
 
+    /**
+     * Run a cheap step on the calling thread instead of hopping to another thread for it,
+     * e.g. parsing a body Play already read into memory
+     * @param supplier the step
+     * @return completed future with the result, or failed with the error of the step
+     */
+    private static <T> CompletableFuture<T> inline(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.completedFuture(supplier.get());
+        } catch (CompletionException ex) {
+            return CompletableFuture.failedFuture(ex);
+        } catch (Exception ex) {
+            return CompletableFuture.failedFuture(new CompletionException(ex));
+        }
+    }
+
     public JsonNode fileToObjectNode (File which) throws IOException {
         try (JsonParser parser = mapper.getFactory().createParser(which)) {
             return mapper.readTree(parser);
@@ -124,7 +207,7 @@ public class SerializationService {
     }
 
     public <T> CompletableFuture<List<T>> parseListBodyOfType (Request request, Class<T> type) {
-        return CompletableFuture.supplyAsync(() -> this.syncParseListBodyOfType(request, type), ec.current());
+        return inline(() -> this.syncParseListBodyOfType(request, type));
     }
 
     public <T> List<T> syncParseListBodyOfType (Request request, Class<T> type) {
@@ -0,0 +1,117 @@
+package io.exercise.api.services;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.google.inject.Inject;
+import com.typesafe.config.Config;
+import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.models.User;
+import org.bson.types.ObjectId;
+import play.libs.Json;
+import play.mvc.Http;
+
+import javax.inject.Singleton;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Signs and verifies the tokens of the users. The HMAC algorithm and the verifier are built once
+ * out of the secret key, both are thread safe and shared by all requests.
+ */
+@Singleton
+public class TokenService {
+    public static final long ONE_DAY_IN_MILLIS = 1000L * 60 * 60 * 24;
+
+    public static final String USERNAME_CLAIM = "username";
+    public static final String ROLES_CLAIM = "roles";
+    public static final String VERSION_CLAIM = "userVersion";
+
+    private final Algorithm algorithm;
+    private final JWTVerifier verifier;
+
+    @Inject
+    public TokenService(Config config) {
+        try {
+            this.algorithm = Algorithm.HMAC256(config.getString("play.http.secret.key"));
+        } catch (UnsupportedEncodingException ex) {
+            throw new IllegalStateException("Invalid play.http.secret.key", ex);
+        }
+        this.verifier = JWT.require(algorithm).build();
+    }
+
+    /**
+     * Create a token for a user, valid for one day
+     * @param user the token is issued for
+     * @return the signed token
+     * @throws com.auth0.jwt.exceptions.JWTCreationException in case the claims could not be signed
+     */
+    public String sign(User user) {
+        return JWT.create()
+                .withIssuer(user.getId().toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + ONE_DAY_IN_MILLIS))
+                .sign(algorithm);
+    }
+
+    /**
+     * Create a stateless token for a user, valid for one day, carrying everything needed to authenticate
+     * its requests without looking the user up: its username, its roles and its current version
+     * @param user the token is issued for
+     * @param version of the user, see {@link io.exercise.api.cache.UserVersions}
+     * @return the signed token
+     * @throws com.auth0.jwt.exceptions.JWTCreationException in case the claims could not be signed
+     */
+    public String sign(User user, long version) {
+        return JWT.create()
+                .withIssuer(user.getId().toString())
+                .withExpiresAt(new Date(System.currentTimeMillis() + ONE_DAY_IN_MILLIS))
+                .withClaim(USERNAME_CLAIM, user.getUsername())
+                .withArrayClaim(ROLES_CLAIM, user.getRoles().toArray(new String[0]))
+                .withClaim(VERSION_CLAIM, version)
+                .sign(algorithm);
+    }
+
+    /**
+     * Build the principal of a verified stateless token out of its claims
+     * @param token verified token
+     * @return the user, without its password, or null in case the token does not carry the claims of its user
+     */
+    public User principalOf(DecodedJWT token) {
+        if (token.getClaim(VERSION_CLAIM).isNull()) {
+            return null;
+        }
+        User user = new User();
+        user.setId(new ObjectId(token.getIssuer()));
+        user.setUsername(token.getClaim(USERNAME_CLAIM).asString());
+        List<String> roles = token.getClaim(ROLES_CLAIM).asList(String.class);
+        user.setRoles(roles == null ? new ArrayList<>() : new ArrayList<>(roles));
+        return user;
+    }
+
+    /**
+     * Verify the signature and the expiry of a token, decoding it only once.
+     * The issuer of a valid token is the id of the user it was signed for
+     * @param token to verify
+     * @return the decoded token
+     * @throws CompletionException with BAD_REQUEST in case the token is missing or not valid
+     */
+    public DecodedJWT verify(String token) {
+        if (token == null) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid signature/claims.")));
+        }
+        try {
+            DecodedJWT decoded = verifier.verify(token);
+            if (decoded.getIssuer() == null || !ObjectId.isValid(decoded.getIssuer())) {
+                throw new JWTVerificationException("Invalid issuer");
+            }
+            return decoded;
+        } catch (JWTVerificationException ex) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid signature/claims.")));
+        }
+    }
+}
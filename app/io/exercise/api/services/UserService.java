@@ -1,20 +1,31 @@
 package io.exercise.api.services;
 
+import akka.NotUsed;
+import akka.stream.javadsl.Source;
 import com.google.common.base.Strings;
 import com.google.inject.Inject;
 import com.mongodb.MongoException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.FindPublisher;
+import com.typesafe.config.Config;
+import io.exercise.api.cache.PrincipalCache;
+import io.exercise.api.cache.UserVersions;
 import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.models.Page;
+import io.exercise.api.models.Principal;
 import io.exercise.api.models.User;
 import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.mongo.DatabaseExecutionContext;
 import io.exercise.api.mongo.IMongoDB;
-import io.exercise.api.utils.Hash;
+import io.exercise.api.mongo.MongoSource;
+import io.exercise.api.mongo.Publishers;
 import io.exercise.api.utils.ServiceUtils;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import play.libs.Json;
-import play.libs.concurrent.HttpExecutionContext;
 import play.mvc.Http;
 
 import javax.inject.Singleton;
@@ -30,11 +41,23 @@ import java.util.concurrent.CompletionException;
 @Singleton
 public class UserService {
     @Inject
-    HttpExecutionContext ec;
+    DatabaseExecutionContext executionContext;
 
     @Inject
     IMongoDB mongoDB;
 
+    @Inject
+    Config config;
+
+    @Inject
+    PrincipalCache principalCache;
+
+    @Inject
+    UserVersions userVersions;
+
+    @Inject
+    PasswordService passwordService;
+
     /**
      * Sets the database up with some users
      * @param users the users to be added to the database
@@ -43,7 +66,7 @@ public class UserService {
      * @see io.exercise.api.controllers.UserController
      */
     public CompletableFuture<List<User>> setup (List<User> users) {
-        return CompletableFuture.supplyAsync(() -> {
+        return executionContext.bulk(() -> {
             try {
                 MongoCollection<User> collection = mongoDB.getMongoDatabase()
                         .getCollection("users", User.class);
@@ -64,24 +87,60 @@ public class UserService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
     }
 
     /**
-     * Return a list with all the users in the database
-     * @return list of users
-     * @throws CompletionException if the data could not be fetched
+     * Return a page of the users in the database, in _id order
+     * @param skip number of users to skip, kept for compatibility, prefer the after cursor
+     * @param after cursor of the previous page, empty for the first page
+     * @param limit number of users per page
+     * @param principal used for authentication
+     * @return page of users
+     * @throws CompletionException if the cursor is not valid or the data could not be fetched
+     * @see io.exercise.api.controllers.UserController
+     */
+    public CompletableFuture<Page<User>> all (int skip, String after, int limit, Principal principal) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toList(() -> findPublisher(skip, after, principal).limit(limit + 1))
+                    .thenApply(fetched -> Page.of(fetched, limit));
+        }
+        return executionContext.read(() -> {
+            try {
+                return Page.of(find(skip, after, principal).limit(limit + 1).into(new ArrayList<>()), limit);
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
+            } catch (MongoException ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not fetch data!" + ex));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
+            }
+        });
+    }
+
+    /**
+     * Stream the users in _id order straight from the mongo cursor, no next cursor is returned
+     * @param skip number of users to skip
+     * @param after cursor of a previous page, empty to start from the first user
+     * @param limit number of users to stream
+     * @param principal used for authentication
+     * @return source of the users, reading from the database when it is run
+     * @throws CompletionException if the cursor is not valid or the data could not be fetched
      * @see io.exercise.api.controllers.UserController
      */
-    public CompletableFuture<List<User>> all (int skip, int limit, User user) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<Source<User, NotUsed>> stream (int skip, String after, int limit, Principal principal) {
+        if (mongoDB.isReactive()) {
+            return Publishers.toSource(() -> findPublisher(skip, after, principal).limit(limit).batchSize(config.getInt("batch_size")));
+        }
+        return executionContext.read(() -> {
             try {
-                return mongoDB.getMongoDatabase()
-                        .getCollection("users", User.class)
-                        .find(ServiceUtils.getReadAccessFilterFor(user.getAccessIds()))
-                        .skip(skip)
-                        .limit(limit)
-                        .into(new ArrayList<>());
+                return MongoSource.from(find(skip, after, principal).limit(limit), config.getInt("batch_size"));
+            } catch (CompletionException ex) {
+                ex.printStackTrace();
+                throw ex;
             } catch (MongoException ex) {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, "Could not fetch data!" + ex));
@@ -89,7 +148,30 @@ public class UserService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
+    }
+
+    private FindIterable<User> find (int skip, String after, Principal principal) {
+        return mongoDB.getMongoDatabase()
+                .getCollection("users", User.class)
+                .find(filterFor(after, principal))
+                .sort(Sorts.ascending("_id"))
+                .skip(skip);
+    }
+
+    private FindPublisher<User> findPublisher (int skip, String after, Principal principal) {
+        return mongoDB.getReactiveMongoDatabase()
+                .getCollection("users", User.class)
+                .find(filterFor(after, principal))
+                .sort(Sorts.ascending("_id"))
+                .skip(skip);
+    }
+
+    private Bson filterFor (String after, Principal principal) {
+        return Filters.and(
+                principal.getReadFilter(),
+                ServiceUtils.getAfterFilterFor(after)
+        );
     }
 
     /**
@@ -100,14 +182,14 @@ public class UserService {
      * @see io.exercise.api.controllers.DashboardController
      */
     public CompletableFuture<User> save(User user) {
-        return CompletableFuture.supplyAsync(() -> {
+        return passwordService.hash(user.getPassword()).thenCompose((hashed) -> executionContext.write(() -> {
             try {
                 MongoCollection<User> collection = mongoDB.getMongoDatabase()
                         .getCollection("users", User.class);
 
 //                user.getReadACL().add(authUser.getId().toString());
 //                user.getWriteACL().add(authUser.getId().toString());
-                user.setPassword(Hash.createPassword(user.getPassword()));
+                user.setPassword(hashed);
                 collection.insertOne(user);
 
                 return user;
@@ -121,7 +203,7 @@ public class UserService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        }));
     }
 
     /**
@@ -133,8 +215,8 @@ public class UserService {
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<User> update(User user, String id, User authUser) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<User> update(User user, String id, Principal authUser) {
+        return executionContext.write(() -> {
             try {
                 MongoCollection<User> collection = mongoDB.getMongoDatabase()
                         .getCollection("users", User.class);
@@ -155,6 +237,8 @@ public class UserService {
                 user.getReadACL().addAll(foundUser.getReadACL());
                 user.getWriteACL().addAll(foundUser.getWriteACL());
                 collection.replaceOne(Filters.eq("_id", new ObjectId(id)), user);
+                principalCache.invalidate(id);
+                userVersions.bump(id);
 
                 return user;
             } catch (CompletionException ex) {
@@ -168,7 +252,7 @@ public class UserService {
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
 
-        }, ec.current());
+        });
     }
 
     /**
@@ -180,8 +264,8 @@ public class UserService {
      * @throws CompletionException in case data is not found or an internal error occurred
      * @see io.exercise.api.controllers.DashboardController
      */
-    public CompletableFuture<User> delete(User user, String id, User authUser) {
-        return CompletableFuture.supplyAsync(() -> {
+    public CompletableFuture<User> delete(User user, String id, Principal authUser) {
+        return executionContext.write(() -> {
             try {
                 MongoCollection<User> collection = mongoDB.getMongoDatabase()
                         .getCollection("users", User.class);
@@ -200,6 +284,8 @@ public class UserService {
                     throw new CompletionException(new RequestException(Http.Status.FORBIDDEN, Json.toJson("FORBIDDEN!")));
                 }
                 collection.deleteOne(Filters.eq("_id", new ObjectId(id)));
+                principalCache.invalidate(id);
+                userVersions.bump(id);
 
                 return user;
             } catch (CompletionException ex) {
@@ -212,6 +298,6 @@ public class UserService {
                 ex.printStackTrace();
                 throw new CompletionException(new RequestException(Http.Status.INTERNAL_SERVER_ERROR, ex));
             }
-        }, ec.current());
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package io.exercise.api.utils;
+
+import io.exercise.api.exceptions.RequestException;
+import org.bson.types.ObjectId;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Opaque keyset pagination cursors. A cursor holds the sort key of the list and the last returned _id,
+ * so that the next page is a range predicate on an index instead of a skip.
+ */
+public class CursorUtils {
+
+    /**
+     * Response header carrying the cursor of the next page, for the endpoints that return plain lists
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    /**
+     * The only sort key of the paginated lists for now
+     */
+    public static final String SORT_KEY = "_id";
+
+    private static final String SEPARATOR = ":";
+
+    public static String encode (ObjectId last) {
+        String cursor = SORT_KEY + SEPARATOR + last.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor returned with a previous page
+     * @param cursor to decode
+     * @return the last _id of the previous page
+     * @throws CompletionException with BAD_REQUEST in case the cursor is not valid
+     */
+    public static ObjectId decode (String cursor) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, 2);
+        } catch (IllegalArgumentException ex) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid cursor!")));
+        }
+        if (parts.length != 2 || !SORT_KEY.equals(parts[0]) || !ObjectId.isValid(parts[1])) {
+            throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, Json.toJson("Invalid cursor!")));
+        }
+        return new ObjectId(parts[1]);
+    }
+
+    public static Result withNextCursor (Result result, String next) {
+        return next == null ? result : result.withHeader(NEXT_CURSOR_HEADER, next);
+    }
+}
@@ -15,6 +15,35 @@ public class Hash {
     public static String createPassword(String encryptedString) throws Exception {
         return BCrypt.hashpw(encryptedString, BCrypt.gensalt());
     }
+
+    /**
+     * Create an encrypted password from a clear string, with the given cost.
+     *
+     * @param encryptedString the encrypted string
+     * @param cost the log2 of the number of hashing rounds
+     * @return an encrypted password of the clear string
+     */
+    public static String createPassword(String encryptedString, int cost) {
+        return BCrypt.hashpw(encryptedString, BCrypt.gensalt(cost));
+    }
+
+    /**
+     * Read the cost an encrypted password was created with, out of its $2a$10$ prefix.
+     *
+     * @param encryptedPassword the encrypted password
+     * @return the cost, or -1 in case it is not a bcrypt password
+     */
+    public static int costOf(String encryptedPassword) {
+        if (encryptedPassword == null || encryptedPassword.length() < 7 || encryptedPassword.charAt(0) != '$') {
+            return -1;
+        }
+        int end = encryptedPassword.indexOf('$', 1);
+        try {
+            return Integer.parseInt(encryptedPassword.substring(end + 1, end + 3));
+        } catch (RuntimeException ex) {
+            return -1;
+        }
+    }
     /**
      *  Check the password
      *
@@ -0,0 +1,67 @@
+package io.exercise.api.utils;
+
+import io.exercise.api.models.dashboard.Dashboard;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+
+/**
+ * Builds dashboard trees out of flat lists of dashboards.
+ * Every node is visited exactly once, so building a tree is linear in the number of dashboards.
+ */
+public class HierarchyUtils {
+
+    /**
+     * Group a flat list of dashboards by their parent id
+     * @param dashboards flat list of dashboards
+     * @return map of parent id to the direct children of that parent
+     */
+    public static Map<ObjectId, List<Dashboard>> groupByParent(Collection<Dashboard> dashboards) {
+        Map<ObjectId, List<Dashboard>> index = new HashMap<>(Math.max(16, dashboards.size() * 4 / 3 + 1));
+        for (Dashboard dashboard : dashboards) {
+            if (dashboard.getParentId() == null) {
+                continue;
+            }
+            index.computeIfAbsent(dashboard.getParentId(), k -> new ArrayList<>()).add(dashboard);
+        }
+        return index;
+    }
+
+    /**
+     * Build the tree of a single dashboard out of a flat list of its descendants
+     * @param root dashboard to start from
+     * @param descendants flat list of the descendants of the root
+     * @return the root, with its children attached
+     */
+    public static Dashboard build(Dashboard root, Collection<Dashboard> descendants) {
+        build(List.of(root), groupByParent(descendants));
+        return root;
+    }
+
+    /**
+     * Build the trees of the given dashboards out of an index of children grouped by parent id.
+     * The index is consumed while building, so every list of children is attached at most once
+     * and a corrupt parent chain (a cycle) cannot make the traversal loop forever.
+     * @param roots dashboards to start from
+     * @param index children grouped by parent id, as returned by {@link #groupByParent(Collection)}
+     * @return the roots, with their children attached
+     */
+    public static List<Dashboard> build(List<Dashboard> roots, Map<ObjectId, List<Dashboard>> index) {
+        Deque<Dashboard> stack = new ArrayDeque<>(roots);
+        while (!stack.isEmpty()) {
+            Dashboard next = stack.pop();
+            List<Dashboard> children = index.remove(next.getId());
+            if (children == null) {
+                if (next.getChildren() == null || !next.getChildren().isEmpty()) {
+                    next.setChildren(new ArrayList<>());
+                }
+                continue;
+            }
+            next.setChildren(children);
+            for (Dashboard child : children) {
+                stack.push(child);
+            }
+        }
+        return roots;
+    }
+}
@@ -1,88 +1,75 @@
 package io.exercise.api.utils;
 
-import com.auth0.jwt.JWT;
-import com.auth0.jwt.JWTVerifier;
-import com.auth0.jwt.algorithms.Algorithm;
-import com.mongodb.client.MongoCollection;
 import com.mongodb.client.model.Filters;
-import com.typesafe.config.Config;
 import io.exercise.api.actions.Attributes;
-import io.exercise.api.exceptions.RequestException;
-import io.exercise.api.models.User;
-import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.models.Principal;
+import io.exercise.api.mongo.migrations.MigrationState;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
-import play.libs.Json;
 import play.mvc.Http;
 
-import java.io.UnsupportedEncodingException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
 public class ServiceUtils {
+    /**
+     * Denormalized union of the read and write lists of a document, a single multikey index serves the read filter on it
+     */
+    public static final String ACCESS_FIELD = "access";
 
-    public static CompletableFuture<String> getTokenFrom (Http.Request request) {
-        return CompletableFuture.supplyAsync(() -> {
-            Optional<String> optionalToken = request.getHeaders().get("token");
-            return optionalToken.orElse(null);
-        });
+    public static Principal getPrincipalFrom (Http.Request request) {
+        return request.attrs().get(Attributes.PRINCIPAL_TYPED_KEY);
     }
 
-    public static CompletableFuture<String> extractIdFrom (String token) {
-        return CompletableFuture.supplyAsync(() -> {
-            byte[] decodedBytes = Base64.getDecoder().decode(token.split("\\.")[1]);
-            String decodedToken = new String(decodedBytes);
-            return Json.parse(decodedToken).get("iss").asText();
-        });
+    /**
+     * The value an acl entry is stored as, 12 bytes ObjectIds for the ids of users, strings for roles and *
+     * @param entry of the acl
+     * @return the ObjectId in case the entry is an id, otherwise the entry
+     */
+    public static Object toAclValue (String entry) {
+        return ObjectId.isValid(entry) ? new ObjectId(entry) : entry;
     }
 
-    public static CompletableFuture<User> getUserFrom (IMongoDB mongoDB, String id) {
-        return CompletableFuture.supplyAsync(() -> {
-            MongoCollection<User> collection = mongoDB.getMongoDatabase()
-                    .getCollection("users", User.class);
-
-            User user = collection.find(Filters.eq("_id", new ObjectId(id))).first();
-            if (user == null) {
-                throw new CompletionException(new RequestException(Http.Status.NOT_FOUND, Json.toJson("User doesn't exist!")));
-            }
-
-            return user;
-        });
-    }
-
-    public static CompletableFuture<User> verifyTokenFor (User user, String token, Config config) {
-
-        return CompletableFuture.supplyAsync(() -> {
-            String secret = config.getString("play.http.secret.key");
-            Algorithm algorithm;
-            try {
-                algorithm = Algorithm.HMAC256(secret);
-            } catch (UnsupportedEncodingException e) {
-                throw new CompletionException(new RequestException(Http.Status.BAD_REQUEST, "Bad Token: " + e.getMessage()));
+    private static List<Object> aclValuesFor (Collection<String> accessIds, MigrationState migrationState) {
+        List<Object> values = new ArrayList<>(accessIds.size() * 2);
+        for (String next : accessIds) {
+            Object value = toAclValue(next);
+            values.add(value);
+            if (!migrationState.isBinaryAclReady() && value instanceof ObjectId) {
+                values.add(next);
             }
-
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .withIssuer(user.getId().toString())
-                    .build();
-            verifier.verify(token);
-
-            return user;
-        });
-    }
-
-    public static User getUserFrom (Http.Request request) {
-        return request.attrs().get(Attributes.USER_TYPED_KEY);
+        }
+        return values;
     }
 
-    public static boolean containElementsInCommon (List<String> input1, List<String> input2) {
-        return input1.stream().anyMatch(new HashSet<>(input2)::contains);
+    /**
+     * The access field of a document, the union of its read and write lists, or * in case both are empty
+     * @param readACL of the document
+     * @param writeACL of the document
+     * @return the access ids of the document
+     */
+    public static List<String> getAccessFor (List<String> readACL, List<String> writeACL) {
+        Set<String> access = new LinkedHashSet<>();
+        if (readACL != null) {
+            access.addAll(readACL);
+        }
+        if (writeACL != null) {
+            access.addAll(writeACL);
+        }
+        if (access.isEmpty()) {
+            access.add(Principal.PUBLIC);
+        }
+        return new ArrayList<>(access);
     }
 
-    public static Bson getReadAccessFilterFor (List<String> accessIds) {
+    public static Bson getReadAccessFilterFor (Collection<String> accessIds, MigrationState migrationState) {
+        List<Object> values = aclValuesFor(accessIds, migrationState);
+        if (migrationState.isAccessFieldReady()) {
+            return Filters.in(ACCESS_FIELD, values);
+        }
         return Filters.or(
-                Filters.in("readACL", accessIds),
-                Filters.in("writeACL", accessIds),
+                Filters.in("readACL", values),
+                Filters.in("writeACL", values),
                 Filters.and(
                         Filters.eq("readACL", new ArrayList<String>()),
                         Filters.eq("writeACL", new ArrayList<String>())
@@ -90,13 +77,26 @@ public class ServiceUtils {
         );
     }
 
-    public static Bson getWriteAccessFilterFor (List<String> accessIds) {
+    public static Bson getWriteAccessFilterFor (Collection<String> accessIds, MigrationState migrationState) {
         return Filters.or(
-                Filters.in("writeACL", accessIds),
+                Filters.in("writeACL", aclValuesFor(accessIds, migrationState)),
                 Filters.and(
                         Filters.eq("readACL", new ArrayList<String>()),
                         Filters.eq("writeACL", new ArrayList<String>())
                 )
         );
     }
+
+    /**
+     * Keyset pagination filter, matching the documents after the given cursor in _id order
+     * @param after cursor returned with the previous page, empty for the first page
+     * @return the filter
+     * @throws CompletionException with BAD_REQUEST in case the cursor is not valid
+     */
+    public static Bson getAfterFilterFor (String after) {
+        if (after == null || after.isEmpty()) {
+            return Filters.empty();
+        }
+        return Filters.gt(CursorUtils.SORT_KEY, CursorUtils.decode(after));
+    }
 }
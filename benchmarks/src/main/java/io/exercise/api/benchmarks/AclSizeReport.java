@@ -0,0 +1,145 @@
+package io.exercise.api.benchmarks;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
+import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.mongo.MongoDriver;
+import io.exercise.api.utils.ServiceUtils;
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures what storing the ids of users in the acls as ObjectIds instead of hex strings saves, on a synthetic
+ * dataset of dashboards shared between users: each is readable by its owner, a few other users and now and then
+ * a role, and writable by its owner. The same documents are compared in both forms, the hex form being what the
+ * codecs wrote before.
+ * <p>
+ * Without arguments it only reports the encoded sizes of a sample. Given a mongo uri it also inserts the dataset
+ * in both forms into the acl_hex and acl_binary collections, indexes their access fields and reports the sizes
+ * of the collections and indexes, the working set of an acl filtered read:
+ * sbt "benchmarks/runMain io.exercise.api.benchmarks.AclSizeReport mongodb://localhost:27017 10000000"
+ */
+public class AclSizeReport {
+    private static final int USERS = 100_000;
+    private static final int SHARED_WITH = 3;
+    private static final List<String> ROLES = List.of("editors", "viewers", "admins");
+    private static final int SAMPLE = 100_000;
+    private static final int BATCH = 10_000;
+    private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+
+    private final Random random = new Random(42);
+    private final List<String> users = new ArrayList<>();
+    private final Codec<Dashboard> codec = MongoDriver.CODEC_REGISTRY.get(Dashboard.class);
+
+    public static void main(String[] args) {
+        AclSizeReport report = new AclSizeReport();
+        report.sample();
+        if (args.length > 0) {
+            report.load(args[0], args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000);
+        }
+    }
+
+    AclSizeReport() {
+        for (int i = 0; i < USERS; i++) {
+            users.add(new ObjectId().toHexString());
+        }
+    }
+
+    private void sample() {
+        long hex = 0;
+        long binary = 0;
+        for (int i = 0; i < SAMPLE; i++) {
+            BsonDocument document = next();
+            binary += new RawBsonDocument(document, BSON_DOCUMENT_CODEC).getByteBuffer().remaining();
+            hex += new RawBsonDocument(toHex(document), BSON_DOCUMENT_CODEC).getByteBuffer().remaining();
+        }
+        System.out.printf("Average document: %d bytes with hex acls, %d bytes with binary acls (%.1f%% smaller)%n",
+                hex / SAMPLE, binary / SAMPLE, 100.0 * (hex - binary) / hex);
+    }
+
+    private void load(String uri, int count) {
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoDatabase database = client.getDatabase("acl-size-report");
+            MongoCollection<BsonDocument> hexCollection = database.getCollection("acl_hex", BsonDocument.class);
+            MongoCollection<BsonDocument> binaryCollection = database.getCollection("acl_binary", BsonDocument.class);
+            hexCollection.drop();
+            binaryCollection.drop();
+            hexCollection.createIndex(Indexes.ascending(ServiceUtils.ACCESS_FIELD));
+            binaryCollection.createIndex(Indexes.ascending(ServiceUtils.ACCESS_FIELD));
+
+            List<BsonDocument> hexBatch = new ArrayList<>(BATCH);
+            List<BsonDocument> binaryBatch = new ArrayList<>(BATCH);
+            for (int i = 0; i < count; i++) {
+                BsonDocument document = next();
+                binaryBatch.add(document);
+                hexBatch.add(toHex(document));
+                if (binaryBatch.size() == BATCH || i == count - 1) {
+                    binaryCollection.insertMany(binaryBatch);
+                    hexCollection.insertMany(hexBatch);
+                    binaryBatch.clear();
+                    hexBatch.clear();
+                }
+            }
+
+            Document hex = database.runCommand(new Document("collStats", "acl_hex"));
+            Document binary = database.runCommand(new Document("collStats", "acl_binary"));
+            report("data size", hex.get("size"), binary.get("size"));
+            report("storage size", hex.get("storageSize"), binary.get("storageSize"));
+            report("access index size", hex.get("indexSizes", Document.class).get("access_1"), binary.get("indexSizes", Document.class).get("access_1"));
+            report("total index size", hex.get("totalIndexSize"), binary.get("totalIndexSize"));
+        }
+    }
+
+    private static void report(String name, Object hex, Object binary) {
+        long before = ((Number) hex).longValue();
+        long after = ((Number) binary).longValue();
+        System.out.printf("%s: %d MB with hex acls, %d MB with binary acls (%.1f%% smaller)%n",
+                name, before >> 20, after >> 20, 100.0 * (before - after) / before);
+    }
+
+    /**
+     * @return a dashboard as the codecs write it now, with binary acls
+     */
+    private BsonDocument next() {
+        String owner = users.get(random.nextInt(USERS));
+        Dashboard dashboard = new Dashboard("Dashboard", "Description of the dashboard", null, new ArrayList<>(), new ArrayList<>());
+        dashboard.setId(new ObjectId());
+        dashboard.getReadACL().add(owner);
+        for (int i = 0; i < SHARED_WITH; i++) {
+            dashboard.getReadACL().add(users.get(random.nextInt(USERS)));
+        }
+        if (random.nextInt(4) == 0) {
+            dashboard.getReadACL().add(ROLES.get(random.nextInt(ROLES.size())));
+        }
+        dashboard.getWriteACL().add(owner);
+
+        BsonDocument document = new BsonDocument();
+        codec.encode(new BsonDocumentWriter(document), dashboard, EncoderContext.builder().build());
+        return document;
+    }
+
+    /**
+     * @return the document with the ids in its acls as hex strings, as the codecs wrote them before
+     */
+    private static BsonDocument toHex(BsonDocument document) {
+        BsonDocument hex = document.clone();
+        for (String field : List.of("readACL", "writeACL", ServiceUtils.ACCESS_FIELD)) {
+            BsonArray values = new BsonArray();
+            for (BsonValue value : hex.getArray(field)) {
+                values.add(value.isObjectId() ? new BsonString(value.asObjectId().getValue().toHexString()) : value);
+            }
+            hex.put(field, values);
+        }
+        return hex;
+    }
+}
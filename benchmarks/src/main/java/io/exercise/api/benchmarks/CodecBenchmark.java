@@ -0,0 +1,117 @@
+package io.exercise.api.benchmarks;
+
+import com.mongodb.MongoClientSettings;
+import io.exercise.api.models.CategoryValueData;
+import io.exercise.api.models.dashboard.*;
+import io.exercise.api.mongo.MongoDriver;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.ClassModel;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.bson.codecs.pojo.Conventions.ANNOTATION_CONVENTION;
+
+/**
+ * Compares encoding and decoding dashboards and contents with the hand written codecs
+ * against the reflective pojo codecs they replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class CodecBenchmark {
+
+    @Param({"pojo", "handwritten"})
+    String codecs;
+
+    Codec<Dashboard> dashboardCodec;
+
+    Codec<Content> contentCodec;
+
+    Dashboard dashboard;
+
+    Content content;
+
+    RawBsonDocument dashboardBson;
+
+    RawBsonDocument contentBson;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CodecRegistry registry = codecs.equals("pojo") ? pojoRegistry() : MongoDriver.CODEC_REGISTRY;
+        dashboardCodec = registry.get(Dashboard.class);
+        contentCodec = registry.get(Content.class);
+
+        dashboard = new Dashboard("Dashboard", "Description of the dashboard", new ObjectId(), new ArrayList<>(), new ArrayList<>());
+        dashboard.setId(new ObjectId());
+        dashboard.setAncestors(List.of(new ObjectId(), dashboard.getParentId()));
+        dashboard.setDepth(2);
+        dashboard.getReadACL().add(new ObjectId().toString());
+        dashboard.getWriteACL().add(new ObjectId().toString());
+
+        List<CategoryValueData> data = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            data.add(new CategoryValueData("Category " + i, i));
+        }
+        LineContent line = new LineContent(data);
+        line.setId(new ObjectId());
+        line.setDashboardId(dashboard.getId());
+        line.getReadACL().addAll(dashboard.getReadACL());
+        content = line;
+
+        dashboardBson = new RawBsonDocument(dashboard, dashboardCodec);
+        contentBson = new RawBsonDocument(content, contentCodec);
+    }
+
+    /**
+     * The registry as it was built by MongoDriver before the hand written codecs
+     */
+    static CodecRegistry pojoRegistry() {
+        CodecProvider pojoCodecProvider = PojoCodecProvider.builder()
+                .conventions(Collections.singletonList(ANNOTATION_CONVENTION))
+                .register("io.exercise.api.models")
+                .register(
+                        ClassModel.builder(Content.class).enableDiscriminator(true).build(),
+                        ClassModel.builder(TextContent.class).enableDiscriminator(true).build(),
+                        ClassModel.builder(EmailContent.class).enableDiscriminator(true).build(),
+                        ClassModel.builder(ImageContent.class).enableDiscriminator(true).build(),
+                        ClassModel.builder(LineContent.class).enableDiscriminator(true).build())
+                .automatic(true)
+                .build();
+        return CodecRegistries.fromRegistries(
+                MongoClientSettings.getDefaultCodecRegistry(),
+                CodecRegistries.fromProviders(pojoCodecProvider));
+    }
+
+    @Benchmark
+    public RawBsonDocument encodeDashboard() {
+        return new RawBsonDocument(dashboard, dashboardCodec);
+    }
+
+    @Benchmark
+    public Dashboard decodeDashboard() {
+        return dashboardBson.decode(dashboardCodec);
+    }
+
+    @Benchmark
+    public RawBsonDocument encodeContent() {
+        return new RawBsonDocument(content, contentCodec);
+    }
+
+    @Benchmark
+    public Content decodeContent() {
+        return contentBson.decode(contentCodec);
+    }
+}
@@ -0,0 +1,110 @@
+package io.exercise.api.benchmarks;
+
+import akka.actor.ActorSystem;
+import akka.actor.CoordinatedShutdown;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import io.exercise.api.mongo.DatabaseExecutionContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.*;
+
+/**
+ * Load test of the blocking database calls: a burst of concurrent requests, each holding a connection of the
+ * simulated mongo pool (the driver default of 100 connections) for a fixed round trip, is run on
+ * <ul>
+ *     <li>fork-join: supplyAsync on a fork join pool sized like the default dispatcher, as the services used to</li>
+ *     <li>pools: the read lane of the DatabaseExecutionContext with platform threads</li>
+ *     <li>virtual: the read lane of the DatabaseExecutionContext with a virtual thread per call</li>
+ * </ul>
+ * The virtual mode needs java 21, on older runtimes it falls back to the pools and measures the same as pools.
+ * Compare the peak thread counts as well with -prof org.openjdk.jmh.profile.JavaFlightRecorderProfiler
+ * or by watching the process while it runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1)
+public class DatabaseExecutionBenchmark {
+    private static final int CONNECTIONS = 100;
+    private static final int FORK_JOIN_PARALLELISM = 64;
+
+    @Param({"fork-join", "pools", "virtual"})
+    String mode;
+
+    @Param({"100", "1000", "10000"})
+    int concurrency;
+
+    @Param({"2"})
+    int roundTripMillis;
+
+    Semaphore connections;
+
+    ForkJoinPool forkJoinPool;
+
+    ActorSystem actorSystem;
+
+    DatabaseExecutionContext executionContext;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        connections = new Semaphore(CONNECTIONS);
+        if (mode.equals("fork-join")) {
+            forkJoinPool = new ForkJoinPool(FORK_JOIN_PARALLELISM);
+            return;
+        }
+        Config config = ConfigFactory.parseString(
+                "database-executors {\n" +
+                "  mode = " + mode + "\n" +
+                "  read { threads = " + CONNECTIONS + ", queue-size = " + concurrency + " }\n" +
+                "  write { threads = 1, queue-size = 1 }\n" +
+                "  auth { threads = 1, queue-size = 1 }\n" +
+                "  bulk { threads = 1, queue-size = 1 }\n" +
+                "}"
+        );
+        actorSystem = ActorSystem.create("benchmark");
+        executionContext = new DatabaseExecutionContext(config, CoordinatedShutdown.get(actorSystem));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (forkJoinPool != null) {
+            forkJoinPool.shutdownNow();
+        }
+        if (actorSystem != null) {
+            actorSystem.terminate();
+        }
+    }
+
+    @Benchmark
+    public void burst(Blackhole blackhole) {
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            requests[i] = forkJoinPool != null
+                    ? CompletableFuture.supplyAsync(this::query, forkJoinPool)
+                    : executionContext.read(this::query);
+        }
+        CompletableFuture.allOf(requests).join();
+        blackhole.consume(requests);
+    }
+
+    /**
+     * A query holding a connection of the pool for one round trip
+     * @return something for the blackhole
+     */
+    private long query() {
+        connections.acquireUninterruptibly();
+        try {
+            Thread.sleep(roundTripMillis);
+            return System.nanoTime();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ex);
+        } finally {
+            connections.release();
+        }
+    }
+}
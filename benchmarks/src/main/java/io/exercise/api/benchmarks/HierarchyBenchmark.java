@@ -0,0 +1,52 @@
+package io.exercise.api.benchmarks;
+
+import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.utils.HierarchyUtils;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures building a dashboard tree out of the flat list returned by the hierarchy lookup.
+ * The width parameter is the number of children per dashboard, so a width of 1 is a single
+ * chain as deep as the tree is big, while a width of 64 gives a shallow, bushy tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class HierarchyBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int nodes;
+
+    @Param({"1", "4", "64"})
+    int width;
+
+    Dashboard root;
+
+    List<Dashboard> descendants;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<Dashboard> all = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            ObjectId parentId = i == 0 ? null : all.get((i - 1) / width).getId();
+            Dashboard dashboard = new Dashboard("Dashboard " + i, "Description " + i, parentId, new ArrayList<>(), new ArrayList<>());
+            dashboard.setId(new ObjectId());
+            all.add(dashboard);
+        }
+        root = all.get(0);
+        descendants = all.subList(1, all.size());
+    }
+
+    @Benchmark
+    public Dashboard build() {
+        return HierarchyUtils.build(root, descendants);
+    }
+}
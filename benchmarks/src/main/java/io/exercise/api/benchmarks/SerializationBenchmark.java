@@ -0,0 +1,70 @@
+package io.exercise.api.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.exercise.api.models.dashboard.Content;
+import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.models.dashboard.TextContent;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import play.libs.Json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serializing a list of dashboards with their content through an intermediate JsonNode tree,
+ * as Json.toJson followed by Results.ok does, with writing the POJOs straight into bytes with a cached writer.
+ * Run with -prof gc to compare the allocation rates as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1)
+public class SerializationBenchmark {
+
+    @Param({"500"})
+    int dashboards;
+
+    @Param({"5"})
+    int items;
+
+    ObjectMapper mapper;
+
+    ObjectWriter writer;
+
+    List<Dashboard> list;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mapper = Json.mapper();
+        list = new ArrayList<>(dashboards);
+        for (int i = 0; i < dashboards; i++) {
+            Dashboard dashboard = new Dashboard("Dashboard " + i, "Description " + i, null, new ArrayList<>(), new ArrayList<>());
+            dashboard.setId(new ObjectId());
+            for (int j = 0; j < items; j++) {
+                Content content = new TextContent("Text " + j + " of dashboard " + i);
+                content.setId(new ObjectId());
+                content.setDashboardId(dashboard.getId());
+                dashboard.getItems().add(content);
+            }
+            list.add(dashboard);
+        }
+        writer = mapper.writerFor(list.getClass());
+    }
+
+    @Benchmark
+    public byte[] jsonNode() throws Exception {
+        JsonNode tree = Json.toJson(list);
+        return mapper.writeValueAsBytes(tree);
+    }
+
+    @Benchmark
+    public byte[] direct() throws Exception {
+        return writer.writeValueAsBytes(list);
+    }
+}
@@ -1,10 +1,26 @@
 package controllers;
 
+import akka.stream.Materializer;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import io.exercise.api.models.Principal;
 import io.exercise.api.models.User;
 import io.exercise.api.models.dashboard.Dashboard;
+import io.exercise.api.models.requests.MoveDashboardRequest;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.mongo.migrations.AccessFieldMigration;
+import io.exercise.api.mongo.migrations.MigrationState;
+import io.exercise.api.utils.CursorUtils;
 import io.exercise.api.utils.DatabaseUtils;
+import io.exercise.api.utils.ServiceUtils;
 import io.exercise.api.utils.TestUtils;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.junit.After;
 import org.junit.Before;
@@ -81,6 +97,99 @@ public class DashboardServiceTest extends WithApplication {
         assertTrue("Expected the collection to have elements!", returnedResult.size() != 0);
     }
 
+    @Test
+    public void testAllWithCursor() {
+        final Result first = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/?limit=3",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals(Http.Status.OK, first.status());
+        List<Dashboard> firstPage = DatabaseUtils.parseJsonListOfType(Json.parse(contentAsString(first)), Dashboard.class);
+        assertEquals("Expected a full page", 3, firstPage.size());
+
+        String next = first.headers().get(CursorUtils.NEXT_CURSOR_HEADER);
+        assertTrue("Expected a cursor for the next page", next != null);
+
+        final Result second = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/?limit=3&after=" + next,
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals(Http.Status.OK, second.status());
+        List<Dashboard> secondPage = DatabaseUtils.parseJsonListOfType(Json.parse(contentAsString(second)), Dashboard.class);
+        assertTrue("Expected the rest of the dashboards", secondPage.size() >= 2);
+        assertTrue("Expected the pages not to overlap", secondPage.get(0).getId().compareTo(firstPage.get(2).getId()) > 0);
+    }
+
+    @Test
+    public void testAllStreamed() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/?stream=true&limit=1000",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+
+        assertEquals("application/json", result.contentType().get());
+        assertEquals(Http.Status.OK, result.status());
+
+        JsonNode body = Json.parse(contentAsString(result, app.injector().instanceOf(Materializer.class)));
+        List<Dashboard> returnedResult = DatabaseUtils.parseJsonListOfType(body, Dashboard.class);
+        assertTrue("Expected the streamed array to have elements!", returnedResult.size() >= 5);
+    }
+
+    @Test
+    public void testAllRaw() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/?raw=true",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals("application/json", result.contentType().get());
+        assertEquals(Http.Status.OK, result.status());
+
+        final Result decoded = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals("Expected the raw json to match the json of the models",
+                Json.parse(contentAsString(decoded)), Json.parse(contentAsString(result)));
+    }
+
+    @Test
+    public void testChildren() {
+        Dashboard child = TestUtils.dashboardBuilder("Dashboard Child", new ObjectId("62ea320afc13ae31a1000150"), new ObjectId("62ea320afc13ae31a1000130"), user);
+        route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/dashboard/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(child)));
+
+        final Http.RequestBuilder childrenRequest = TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/62ea320afc13ae31a1000130/children/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(""));
+        final Result result = route(app, childrenRequest);
+
+        assertEquals("application/json", result.contentType().get());
+        assertEquals(Http.Status.OK, result.status());
+
+        JsonNode body = Json.parse(contentAsString(result));
+        List<Dashboard> returnedResult = DatabaseUtils.parseJsonListOfType(body, Dashboard.class);
+        assertEquals("Expected the saved child", 1, returnedResult.size());
+        assertEquals("Expected the saved child", child.getId(), returnedResult.get(0).getId());
+        assertEquals("Expected the child to have no children", Integer.valueOf(0), returnedResult.get(0).getChildCount());
+    }
+
     @Test
     public void testSave() {
         Dashboard dashboard = TestUtils.dashboardBuilder("Dashboard", new ObjectId("62ea320afc13ae31a1000136"), new ObjectId("62ea320afc13ae31a1000139"), user);
@@ -152,6 +261,129 @@ public class DashboardServiceTest extends WithApplication {
         assertEquals(Http.Status.NOT_FOUND, result.status());
     }
 
+    @Test
+    public void testMove() {
+        Dashboard child = TestUtils.dashboardBuilder("Dashboard Child", new ObjectId("62ea320afc13ae31a1000151"), new ObjectId("62ea320afc13ae31a1000130"), user);
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(child)));
+
+        final Result result = route(app, TestUtils.requestBuilder(
+                "PUT",
+                "/api/dashboard/62ea320afc13ae31a1000130/move/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new MoveDashboardRequest(new ObjectId("62ea320afc13ae31a1000131")))));
+        assertEquals(Http.Status.OK, result.status());
+
+        Dashboard moved = Json.fromJson(Json.parse(contentAsString(result)), Dashboard.class);
+        assertEquals(List.of(new ObjectId("62ea320afc13ae31a1000131")), moved.getAncestors());
+        Document storedChild = dashboards().find(Filters.eq("_id", child.getId())).first();
+        assertEquals("Expected the path of the descendant to follow the move",
+                List.of(new ObjectId("62ea320afc13ae31a1000131"), new ObjectId("62ea320afc13ae31a1000130")),
+                storedChild.getList("ancestors", ObjectId.class));
+        assertEquals(2, storedChild.getInteger("depth").intValue());
+    }
+
+    @Test
+    public void testMoveUnderDescendant() {
+        Dashboard child = TestUtils.dashboardBuilder("Dashboard Child", new ObjectId("62ea320afc13ae31a1000152"), new ObjectId("62ea320afc13ae31a1000130"), user);
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(child)));
+
+        final Result result = route(app, TestUtils.requestBuilder(
+                "PUT",
+                "/api/dashboard/62ea320afc13ae31a1000130/move/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new MoveDashboardRequest(child.getId()))));
+        assertEquals(Http.Status.BAD_REQUEST, result.status());
+    }
+
+    @Test
+    public void testUpdateParent() {
+        Dashboard child = TestUtils.dashboardBuilder("Dashboard Child", new ObjectId("62ea320afc13ae31a1000153"), new ObjectId("62ea320afc13ae31a1000130"), user);
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(child)));
+
+        Dashboard dashboard = TestUtils.dashboardBuilder("Dashboard1 Moved", new ObjectId("62ea320afc13ae31a1000130"), new ObjectId("62ea320afc13ae31a1000132"), user);
+        final Result result = route(app, TestUtils.requestBuilder("PUT", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(dashboard)));
+        assertEquals(Http.Status.OK, result.status());
+
+        Document storedChild = dashboards().find(Filters.eq("_id", child.getId())).first();
+        assertEquals("Expected the path of the descendant to follow the change of parent",
+                List.of(new ObjectId("62ea320afc13ae31a1000132"), new ObjectId("62ea320afc13ae31a1000130")),
+                storedChild.getList("ancestors", ObjectId.class));
+    }
+
+    @Test
+    public void testUpdateMissingParent() {
+        Dashboard dashboard = TestUtils.dashboardBuilder("Dashboard1 Moved", new ObjectId("62ea320afc13ae31a1000130"), new ObjectId("62ea320afc13ae31a1000159"), user);
+        final Result result = route(app, TestUtils.requestBuilder("PUT", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(dashboard)));
+
+        assertEquals(Http.Status.NOT_FOUND, result.status());
+        assertEquals("Expected the dashboard to stay where it was", null,
+                dashboards().find(Filters.eq("_id", dashboard.getId())).first().get("parentId"));
+    }
+
+    @Test
+    public void testUpdateForbiddenParent() {
+        // a dashboard of another user, that this one can not write
+        User other = new User("other", "password", new ArrayList<>());
+        other.setId(new ObjectId("61aa320afc13ae31a1000145"));
+        app.injector().instanceOf(IMongoDB.class).getMongoDatabase()
+                .getCollection("dashboards", Dashboard.class)
+                .insertOne(TestUtils.dashboardBuilder("Other Dashboard", new ObjectId("62ea320afc13ae31a1000158"), null, other));
+
+        Dashboard dashboard = TestUtils.dashboardBuilder("Dashboard1 Moved", new ObjectId("62ea320afc13ae31a1000130"), new ObjectId("62ea320afc13ae31a1000158"), user);
+        final Result updated = route(app, TestUtils.requestBuilder("PUT", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(dashboard)));
+        assertEquals(Http.Status.FORBIDDEN, updated.status());
+
+        final Result moved = route(app, TestUtils.requestBuilder(
+                "PUT",
+                "/api/dashboard/62ea320afc13ae31a1000130/move/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new MoveDashboardRequest(new ObjectId("62ea320afc13ae31a1000158")))));
+        assertEquals(Http.Status.FORBIDDEN, moved.status());
+        assertEquals("Expected the dashboard to stay where it was", null,
+                dashboards().find(Filters.eq("_id", dashboard.getId())).first().get("parentId"));
+    }
+
+    @Test
+    public void testHierarchyWhileAncestorsMigrate() {
+        awaitAncestorsReady();
+        Dashboard child = TestUtils.dashboardBuilder("Dashboard Child", new ObjectId("62ea320afc13ae31a1000154"), new ObjectId("62ea320afc13ae31a1000130"), user);
+        Dashboard grandchild = TestUtils.dashboardBuilder("Dashboard Grandchild", new ObjectId("62ea320afc13ae31a1000155"), child.getId(), user);
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(child)));
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(grandchild)));
+        // dashboards saved before the materialized path existed, that the migration has not reached yet
+        dashboards().updateMany(Filters.in("_id", child.getId(), grandchild.getId()), Updates.combine(Updates.unset("ancestors"), Updates.unset("depth")));
+
+        migrationState().setAncestorsReady(false);
+        try {
+            final Result result = route(app, TestUtils.requestBuilder(
+                    "GET",
+                    "/api/dashboard/hierarchy/",
+                    "token",
+                    authenticatedUserToken,
+                    Json.toJson("")));
+            assertEquals(Http.Status.OK, result.status());
+            Dashboard root = DatabaseUtils.parseJsonListOfType(Json.parse(contentAsString(result)).get("data"), Dashboard.class).stream()
+                    .filter(next -> next.getId().equals(new ObjectId("62ea320afc13ae31a1000130")))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals("Expected the tree from the dashboard index", child.getId(), root.getChildren().get(0).getId());
+            assertEquals(grandchild.getId(), root.getChildren().get(0).getChildren().get(0).getId());
+
+            final Result moved = route(app, TestUtils.requestBuilder(
+                    "PUT",
+                    "/api/dashboard/62ea320afc13ae31a1000130/move/",
+                    "token",
+                    authenticatedUserToken,
+                    Json.toJson(new MoveDashboardRequest(grandchild.getId()))));
+            assertEquals("Expected the cycle to be found without the paths", Http.Status.BAD_REQUEST, moved.status());
+        } finally {
+            migrationState().setAncestorsReady(true);
+        }
+    }
+
     @Test
     public void testDelete() {
         Dashboard dashboard = TestUtils.dashboardBuilder("Dashboard", new ObjectId("62ea120afc13ae31a1000139"), new ObjectId("62ea320afc13ae31a1000137"), user);
@@ -197,6 +429,79 @@ public class DashboardServiceTest extends WithApplication {
         assertEquals(Http.Status.NOT_FOUND, result.status());
     }
 
+    @Test
+    public void testPrincipalCacheMetrics() {
+        final Http.RequestBuilder metricsRequest = TestUtils.requestBuilder(
+                "GET",
+                "/api/metrics/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(""));
+        final Result result = route(app, metricsRequest);
+
+        assertEquals(Http.Status.OK, result.status());
+
+        // the dashboards of the setup were saved by the same user, only the first request looked it up
+        JsonNode principals = Json.parse(contentAsString(result)).get("principals");
+        assertEquals(1, principals.get("misses").asLong());
+        assertTrue(principals.get("hits").asLong() >= 4);
+    }
+
+    @Test
+    public void testReadFilterExplain() {
+        MongoDatabase database = app.injector().instanceOf(IMongoDB.class).getMongoDatabase();
+        new AccessFieldMigration().run(database, 2);
+        assertEquals("Expected every dashboard to have its access field", 0,
+                database.getCollection("dashboards").countDocuments(Filters.exists(ServiceUtils.ACCESS_FIELD, false)));
+
+        // the filters before and after the migration, the state of the application is left alone
+        MigrationState migrating = new MigrationState();
+        MigrationState migrated = new MigrationState();
+        migrated.setAccessFieldReady(true);
+        List<String> accessIds = new ArrayList<>(Principal.of(user, migrating).getAccessIds());
+        Bson before = ServiceUtils.getReadAccessFilterFor(accessIds, migrating);
+        Bson after = ServiceUtils.getReadAccessFilterFor(accessIds, migrated);
+
+        assertEquals("Expected both filters to match the same dashboards",
+                database.getCollection("dashboards").countDocuments(before),
+                database.getCollection("dashboards").countDocuments(after));
+
+        String beforePlan = winningPlan(database, before);
+        String afterPlan = winningPlan(database, after);
+        assertTrue("Expected the $or over the acl lists to scan the collection", beforePlan.contains("COLLSCAN"));
+        assertTrue("Expected the filter on the access field to scan its index", afterPlan.contains("IXSCAN") && afterPlan.contains("access_1"));
+    }
+
+    /**
+     * The migrations run in the background when the application starts, wait for the ancestors migration
+     * so that it does not flip the flag back in the middle of a test
+     */
+    private void awaitAncestorsReady() {
+        for (int attempt = 0; attempt < 100 && !migrationState().isAncestorsReady(); attempt++) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        assertTrue("Expected the ancestors migration to complete", migrationState().isAncestorsReady());
+    }
+
+    private MigrationState migrationState() {
+        return app.injector().instanceOf(MigrationState.class);
+    }
+
+    private MongoCollection<Document> dashboards() {
+        return app.injector().instanceOf(IMongoDB.class).getMongoDatabase().getCollection("dashboards");
+    }
+
+    private static String winningPlan(MongoDatabase database, Bson filter) {
+        Document explain = database.runCommand(new Document("explain", new Document("find", "dashboards")
+                .append("filter", filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry())))
+                .append("verbosity", "queryPlanner"));
+        return explain.get("queryPlanner", Document.class).get("winningPlan", Document.class).toJson();
+    }
+
     @After
     public void cleanUp() {
     }
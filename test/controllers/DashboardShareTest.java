@@ -0,0 +1,174 @@
+package controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import io.exercise.api.models.ShareJob;
+import io.exercise.api.models.User;
+import io.exercise.api.models.enums.ShareJobStatus;
+import io.exercise.api.models.requests.ShareDashboardRequest;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.utils.TestUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.WithApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+public class DashboardShareTest extends WithApplication {
+    private static final ObjectId ROOT = new ObjectId("62ea320afc13ae31a1000160");
+    private static final ObjectId CHILD = new ObjectId("62ea320afc13ae31a1000161");
+    private static final ObjectId GRANDCHILD = new ObjectId("62ea320afc13ae31a1000162");
+    private static final ObjectId OUTSIDE = new ObjectId("62ea320afc13ae31a1000163");
+    private static final String OTHER_USER = "61aa320afc13ae31a1000144";
+
+    public User user;
+    public String authenticatedUserToken;
+
+    @Before
+    public void setup() {
+        user = new User("sharer", "password", new ArrayList<>());
+        user.setId(new ObjectId("61aa320afc13ae31a1000143"));
+        route(app, TestUtils.requestBuilder("POST", "/api/user/", Json.toJson(user)));
+        final Result result = route(app, TestUtils.requestBuilder("POST", "/api/authenticate/", Json.toJson(user)));
+        authenticatedUserToken = Json.fromJson(Json.parse(contentAsString(result)), String.class);
+
+        // a subtree of three dashboards with an item, and a dashboard outside of it
+        save(TestUtils.dashboardBuilder("Root", ROOT, null, user));
+        save(TestUtils.dashboardBuilder("Child", CHILD, ROOT, user));
+        save(TestUtils.dashboardBuilder("Grandchild", GRANDCHILD, CHILD, user));
+        save(TestUtils.dashboardBuilder("Outside", OUTSIDE, null, user));
+        contents().insertOne(new Document("dashboardId", CHILD)
+                .append("type", "TEXT")
+                .append("text", "Item")
+                .append("readACL", List.of(user.getId()))
+                .append("writeACL", List.of(user.getId()))
+                .append("access", List.of(user.getId())));
+    }
+
+    @Test
+    public void testShareGrant() {
+        ShareJob job = awaitCompleted(share(new ShareDashboardRequest(OTHER_USER, true, false)));
+
+        assertEquals("Expected the whole subtree", 3, job.getDashboards());
+        assertEquals(3, job.getProcessed());
+        assertEquals(3, job.getUpdatedDashboards());
+        assertEquals(1, job.getUpdatedContents());
+        for (ObjectId id : List.of(ROOT, CHILD, GRANDCHILD)) {
+            Document dashboard = dashboard(id);
+            assertTrue("Expected read access for " + id, dashboard.getList("readACL", Object.class).contains(new ObjectId(OTHER_USER)));
+            assertTrue("Expected write access for " + id, dashboard.getList("writeACL", Object.class).contains(new ObjectId(OTHER_USER)));
+            assertTrue("Expected the access field to follow the acls for " + id, dashboard.getList("access", Object.class).contains(new ObjectId(OTHER_USER)));
+        }
+        Document item = contents().find(Filters.eq("dashboardId", CHILD)).first();
+        assertTrue("Expected read access to the item", item.getList("readACL", Object.class).contains(new ObjectId(OTHER_USER)));
+        assertFalse("Expected the dashboards outside of the subtree to stay private",
+                dashboard(OUTSIDE).getList("readACL", Object.class).contains(new ObjectId(OTHER_USER)));
+
+        // sharing again changes nothing
+        ShareJob again = awaitCompleted(share(new ShareDashboardRequest(OTHER_USER, true, false)));
+        assertEquals(3, again.getProcessed());
+        assertEquals(0, again.getUpdatedDashboards());
+        assertEquals(0, again.getUpdatedContents());
+    }
+
+    @Test
+    public void testShareRevoke() {
+        awaitCompleted(share(new ShareDashboardRequest(OTHER_USER, true, false)));
+        ShareJob job = awaitCompleted(share(new ShareDashboardRequest(OTHER_USER, false, true)));
+
+        assertEquals(3, job.getUpdatedDashboards());
+        assertEquals(1, job.getUpdatedContents());
+        for (ObjectId id : List.of(ROOT, CHILD, GRANDCHILD)) {
+            Document dashboard = dashboard(id);
+            assertFalse("Expected no read access for " + id, dashboard.getList("readACL", Object.class).contains(new ObjectId(OTHER_USER)));
+            assertFalse("Expected no write access for " + id, dashboard.getList("writeACL", Object.class).contains(new ObjectId(OTHER_USER)));
+            assertEquals("Expected the owner to keep its access to " + id, List.of(user.getId()), dashboard.getList("access", Object.class));
+        }
+    }
+
+    @Test
+    public void testShareJobProgress() {
+        ShareJob started = share(new ShareDashboardRequest("EDITOR", false, false));
+        assertEquals(ROOT.toHexString(), started.getDashboardId());
+        assertEquals("EDITOR", started.getPrincipal());
+
+        ShareJob job = awaitCompleted(started);
+        assertEquals("Expected every dashboard of the subtree to be processed", job.getDashboards(), job.getProcessed());
+        assertTrue("Expected the completion time", job.getCompletedAt() != null && job.getCompletedAt() >= job.getStartedAt());
+        assertTrue("Expected the role to read the subtree", dashboard(GRANDCHILD).getList("readACL", Object.class).contains("EDITOR"));
+        assertFalse("Expected the role not to write the subtree", dashboard(GRANDCHILD).getList("writeACL", Object.class).contains("EDITOR"));
+
+        final Result missing = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/share/" + new ObjectId().toHexString() + "/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals(Http.Status.NOT_FOUND, missing.status());
+    }
+
+    private void save(Object dashboard) {
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken, Json.toJson(dashboard)));
+    }
+
+    private ShareJob share(ShareDashboardRequest request) {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/dashboard/" + ROOT.toHexString() + "/share/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(request)));
+        assertEquals(Http.Status.OK, result.status());
+        return Json.fromJson(Json.parse(contentAsString(result)), ShareJob.class);
+    }
+
+    private ShareJob awaitCompleted(ShareJob job) {
+        for (int attempt = 0; attempt < 100; attempt++) {
+            final Result result = route(app, TestUtils.requestBuilder(
+                    "GET",
+                    "/api/dashboard/share/" + job.getId() + "/",
+                    "token",
+                    authenticatedUserToken,
+                    Json.toJson("")));
+            assertEquals(Http.Status.OK, result.status());
+            JsonNode body = Json.parse(contentAsString(result));
+            ShareJob progress = Json.fromJson(body, ShareJob.class);
+            if (progress.getStatus() != ShareJobStatus.RUNNING) {
+                assertEquals("Expected the job to complete, failed with " + progress.getError(), ShareJobStatus.COMPLETED, progress.getStatus());
+                return progress;
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        throw new AssertionError("Expected the job to complete within 10 seconds");
+    }
+
+    private Document dashboard(ObjectId id) {
+        return database().getCollection("dashboards").find(Filters.eq("_id", id)).first();
+    }
+
+    private MongoCollection<Document> contents() {
+        return database().getCollection("dashboardsContent");
+    }
+
+    private MongoDatabase database() {
+        return app.injector().instanceOf(IMongoDB.class).getMongoDatabase();
+    }
+}
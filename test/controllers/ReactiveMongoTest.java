@@ -0,0 +1,156 @@
+package controllers;
+
+import akka.stream.Materializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.exercise.api.cache.UserLoader;
+import io.exercise.api.exceptions.RequestException;
+import io.exercise.api.models.User;
+import io.exercise.api.models.dashboard.Content;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.utils.CursorUtils;
+import io.exercise.api.utils.DatabaseUtils;
+import io.exercise.api.utils.TestUtils;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import play.Application;
+import play.inject.guice.GuiceApplicationBuilder;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.WithApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+/**
+ * The services that support the reactive streams driver, run on it against the embedded mongod
+ */
+public class ReactiveMongoTest extends WithApplication {
+    private static final ObjectId DASHBOARD = new ObjectId("62ea320afc13ae31a1000170");
+
+    public User user;
+    public String authenticatedUserToken;
+
+    @Override
+    protected Application provideApplication() {
+        return new GuiceApplicationBuilder()
+                .configure("mongo.driver", "reactive")
+                .build();
+    }
+
+    @Before
+    public void setup() {
+        assertTrue("Expected the reactive driver", app.injector().instanceOf(IMongoDB.class).isReactive());
+
+        user = new User("reactor", "password", new ArrayList<>());
+        user.setId(new ObjectId("61aa320afc13ae31a1000147"));
+        route(app, TestUtils.requestBuilder("POST", "/api/user/", Json.toJson(user)));
+        final Result result = route(app, TestUtils.requestBuilder("POST", "/api/authenticate/", Json.toJson(user)));
+        authenticatedUserToken = Json.fromJson(Json.parse(contentAsString(result)), String.class);
+
+        route(app, TestUtils.requestBuilder("POST", "/api/dashboard/", "token", authenticatedUserToken,
+                Json.toJson(TestUtils.dashboardBuilder("Reactive", DASHBOARD, null, user))));
+        for (String text : List.of("First", "Second")) {
+            app.injector().instanceOf(IMongoDB.class).getMongoDatabase()
+                    .getCollection("dashboardsContent")
+                    .insertOne(new Document("dashboardId", DASHBOARD)
+                            .append("type", "TEXT")
+                            .append("text", text)
+                            .append("readACL", List.of(user.getId()))
+                            .append("writeACL", List.of(user.getId()))
+                            .append("access", List.of(user.getId())));
+        }
+    }
+
+    @Test
+    public void testAllContents() {
+        final Result first = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/" + DASHBOARD.toHexString() + "/content/?limit=1",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals(Http.Status.OK, first.status());
+        assertEquals(1, Json.parse(contentAsString(first)).size());
+        String next = first.header(CursorUtils.NEXT_CURSOR_HEADER).orElseThrow(() -> new AssertionError("Expected a cursor to the second content"));
+
+        final Result second = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/" + DASHBOARD.toHexString() + "/content/?limit=1&after=" + next,
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+        assertEquals(Http.Status.OK, second.status());
+        List<Content> contents = DatabaseUtils.parseJsonListOfType(Json.parse(contentAsString(second)), Content.class);
+        assertEquals(1, contents.size());
+        assertEquals(DASHBOARD, contents.get(0).getDashboardId());
+    }
+
+    @Test
+    public void testAllContentsStreamed() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/" + DASHBOARD.toHexString() + "/content/?stream=true",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+
+        assertEquals(Http.Status.OK, result.status());
+        JsonNode body = Json.parse(contentAsString(result, app.injector().instanceOf(Materializer.class)));
+        assertEquals("Expected both contents from the publisher", 2, DatabaseUtils.parseJsonListOfType(body, Content.class).size());
+    }
+
+    @Test
+    public void testAllContentsBadId() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/dashboard/reactive/content/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+
+        assertEquals(Http.Status.NOT_FOUND, result.status());
+    }
+
+    @Test
+    public void testAllUsersStreamed() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "GET",
+                "/api/user/?stream=true",
+                "token",
+                authenticatedUserToken,
+                Json.toJson("")));
+
+        assertEquals(Http.Status.OK, result.status());
+        JsonNode body = Json.parse(contentAsString(result, app.injector().instanceOf(Materializer.class)));
+        assertTrue("Expected the authenticated user", DatabaseUtils.parseJsonListOfType(body, User.class).stream()
+                .anyMatch(next -> next.getId().equals(user.getId())));
+    }
+
+    @Test
+    public void testUserLookup() {
+        UserLoader loader = app.injector().instanceOf(UserLoader.class);
+        assertEquals(user.getUsername(), loader.load(user.getId().toString()).join().getUsername());
+
+        try {
+            loader.load(new ObjectId().toHexString()).join();
+            fail("Expected a missing user not to be found");
+        } catch (CompletionException ex) {
+            Throwable cause = ex;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            assertTrue(cause instanceof RequestException);
+            assertEquals(Http.Status.NOT_FOUND, ((RequestException) cause).getStatusCode());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.exercise.api.cache.RoleHierarchy;
+import io.exercise.api.models.Role;
+import io.exercise.api.models.User;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.utils.TestUtils;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.Json;
+import play.mvc.Http;
+import play.mvc.Result;
+import play.test.WithApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static play.test.Helpers.contentAsString;
+import static play.test.Helpers.route;
+
+public class RoleServiceTest extends WithApplication {
+    public User user;
+    public String authenticatedUserToken;
+
+    @Before
+    public void setup() {
+        user = new User("roler", "password", new ArrayList<>(List.of("EDITOR", "REVIEWER", "PUBLISHER")));
+        user.setId(new ObjectId("61aa320afc13ae31a1000146"));
+        route(app, TestUtils.requestBuilder("POST", "/api/user/", Json.toJson(user)));
+        final Result result = route(app, TestUtils.requestBuilder("POST", "/api/authenticate/", Json.toJson(user)));
+        authenticatedUserToken = Json.fromJson(Json.parse(contentAsString(result)), String.class);
+    }
+
+    @Test
+    public void testSave() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/role/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new Role("REVIEWER", List.of("EDITOR")))));
+
+        assertEquals(Http.Status.OK, result.status());
+        JsonNode body = Json.parse(contentAsString(result));
+        assertEquals("REVIEWER", Json.fromJson(body, Role.class).getName());
+    }
+
+    @Test
+    public void testSaveInheritingForeignRole() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/role/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new Role("REVIEWER", List.of("ADMIN")))));
+
+        assertEquals("Expected a role the user does not have not to be delegated", Http.Status.FORBIDDEN, result.status());
+    }
+
+    @Test
+    public void testSaveRoleNotHeld() {
+        // the holders of the new role would be granted a role this user has
+        final Result result = route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/role/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new Role("INTERN", List.of("EDITOR")))));
+
+        assertEquals("Expected a role the user does not have not to be defined", Http.Status.FORBIDDEN, result.status());
+    }
+
+    @Test
+    public void testSaveInheritingUser() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/role/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new Role("REVIEWER", List.of(user.getId().toString())))));
+
+        assertEquals("Expected the id of a user not to be inherited", Http.Status.FORBIDDEN, result.status());
+    }
+
+    @Test
+    public void testSaveInvalidName() {
+        final Result result = route(app, TestUtils.requestBuilder(
+                "POST",
+                "/api/role/",
+                "token",
+                authenticatedUserToken,
+                Json.toJson(new Role(new ObjectId().toHexString(), List.of()))));
+
+        assertEquals("Expected a role not to be named like the id of a user", Http.Status.BAD_REQUEST, result.status());
+    }
+
+    @Test
+    public void testUpdateKeepingInheritedRoles() {
+        // a role set up by someone else, that inherits a role this user does not have
+        Role role = writableRole("PUBLISHER", List.of("MANAGER"));
+
+        role.setInherits(List.of("MANAGER", "EDITOR"));
+        final Result result = route(app, TestUtils.requestBuilder("PUT", "/api/role/", "token", authenticatedUserToken, Json.toJson(role)));
+
+        assertEquals("Expected the roles inherited before not to be delegated again", Http.Status.OK, result.status());
+    }
+
+    @Test
+    public void testRenameInheritingForeignRole() {
+        Role role = writableRole("AUDITOR", List.of("ADMIN"));
+
+        // renamed after a role the user has, the user would be granted the inherited roles
+        role.setName("EDITOR");
+        final Result result = route(app, TestUtils.requestBuilder("PUT", "/api/role/", "token", authenticatedUserToken, Json.toJson(role)));
+
+        assertEquals("Expected every inherited role to be delegated on a rename", Http.Status.FORBIDDEN, result.status());
+    }
+
+    @Test
+    public void testRenameToRoleNotHeld() {
+        Role role = writableRole("AUDITOR", List.of("EDITOR"));
+
+        role.setName("INTERN");
+        final Result result = route(app, TestUtils.requestBuilder("PUT", "/api/role/", "token", authenticatedUserToken, Json.toJson(role)));
+
+        assertEquals("Expected a role not to be renamed after a role the user does not have", Http.Status.FORBIDDEN, result.status());
+    }
+
+    @Test
+    public void testRenameInvalidName() {
+        Role role = writableRole("AUDITOR", List.of());
+
+        role.setName(user.getId().toString());
+        final Result result = route(app, TestUtils.requestBuilder("PUT", "/api/role/", "token", authenticatedUserToken, Json.toJson(role)));
+
+        assertEquals(Http.Status.BAD_REQUEST, result.status());
+    }
+
+    private Role writableRole(String name, List<String> inherits) {
+        Role role = new Role(name, inherits);
+        role.setId(new ObjectId());
+        role.setReadACL(new ArrayList<>(List.of(user.getId().toString())));
+        role.setWriteACL(new ArrayList<>(List.of(user.getId().toString())));
+        app.injector().instanceOf(IMongoDB.class).getMongoDatabase()
+                .getCollection(RoleHierarchy.COLLECTION, Role.class)
+                .insertOne(role);
+        return role;
+    }
+}
@@ -0,0 +1,65 @@
+package controllers;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigValueFactory;
+import io.exercise.api.cache.PrincipalCache;
+import io.exercise.api.cache.UserLoader;
+import io.exercise.api.models.User;
+import io.exercise.api.mongo.DatabaseExecutionContext;
+import io.exercise.api.mongo.IMongoDB;
+import io.exercise.api.utils.TestUtils;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import play.libs.Json;
+import play.test.WithApplication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static play.test.Helpers.route;
+
+public class UserLoaderTest extends WithApplication {
+    public User user;
+
+    @Before
+    public void setup() {
+        user = new User("loader", "password", new ArrayList<>());
+        user.setId(new ObjectId("61aa320afc13ae31a1000142"));
+        route(app, TestUtils.requestBuilder("POST", "/api/user/", Json.toJson(user)));
+    }
+
+    @Test
+    public void testInvalidationDropsLookupInFlight() {
+        PrincipalCache principalCache = app.injector().instanceOf(PrincipalCache.class);
+        // the first lookup waits for a second one to fill its batch, so it is still in flight when the user changes
+        Config config = app.injector().instanceOf(Config.class)
+                .withValue("user-loader.window", ConfigValueFactory.fromAnyRef("1 minute"))
+                .withValue("user-loader.max-batch", ConfigValueFactory.fromAnyRef(2));
+        UserLoader loader = new UserLoader(
+                app.injector().instanceOf(IMongoDB.class),
+                app.injector().instanceOf(DatabaseExecutionContext.class),
+                config,
+                principalCache);
+        String id = user.getId().toString();
+        principalCache.invalidate(id);
+
+        CompletableFuture<User> before = principalCache.get(id, loader::load);
+        app.injector().instanceOf(IMongoDB.class).getMongoDatabase()
+                .getCollection("users")
+                .updateOne(Filters.eq("_id", user.getId()), Updates.set("roles", List.of("EDITOR")));
+        principalCache.invalidate(id);
+        CompletableFuture<User> after = principalCache.get(id, loader::load);
+
+        assertNotSame("Expected the lookup after the invalidation not to join the one before it", before, after);
+        before.join();
+        after.join();
+        User cached = principalCache.get(id, (ignored) -> CompletableFuture.failedFuture(new AssertionError("Expected the user to be cached"))).join();
+        assertEquals("Expected the user as it is after the change", List.of("EDITOR"), cached.getRoles());
+    }
+}
@@ -0,0 +1,48 @@
+package io.exercise.api.cache;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RoleHierarchyTest {
+
+    @Test
+    public void testClosureOfTransitiveRoles() {
+        Map<String, Set<String>> closure = RoleHierarchy.closureOf(Map.of(
+                "ADMIN", List.of("EDITOR"),
+                "EDITOR", List.of("VIEWER"),
+                "VIEWER", List.of()
+        ));
+
+        assertEquals(Set.of("ADMIN", "EDITOR", "VIEWER"), closure.get("ADMIN"));
+        assertEquals(Set.of("EDITOR", "VIEWER"), closure.get("EDITOR"));
+        assertFalse("Expected no entry for a role that implies nothing", closure.containsKey("VIEWER"));
+    }
+
+    @Test
+    public void testClosureOfCycle() {
+        Map<String, Set<String>> closure = RoleHierarchy.closureOf(Map.of(
+                "FIRST", List.of("SECOND"),
+                "SECOND", List.of("THIRD"),
+                "THIRD", List.of("FIRST", "OTHER")
+        ));
+
+        assertEquals("Expected the roles of a cycle to imply each other", Set.of("FIRST", "SECOND", "THIRD", "OTHER"), closure.get("FIRST"));
+        assertEquals(Set.of("FIRST", "SECOND", "THIRD", "OTHER"), closure.get("SECOND"));
+        assertEquals(Set.of("FIRST", "SECOND", "THIRD", "OTHER"), closure.get("THIRD"));
+    }
+
+    @Test
+    public void testClosureOfUnknownRole() {
+        // a role may inherit a role that has no document of its own
+        Map<String, Set<String>> closure = RoleHierarchy.closureOf(Map.of("EDITOR", List.of("MISSING")));
+
+        assertEquals(Set.of("EDITOR", "MISSING"), closure.get("EDITOR"));
+        assertEquals(1, closure.size());
+    }
+}